@@ -0,0 +1,134 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.event.CyEvent;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.event.CyPayloadEvent;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.internal.CyNetworkFactoryImpl;
+import org.cytoscape.model.internal.CyTableFactoryImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a BioPAX model to a network with the node/edge attributes
+ * written cell by cell (Attributes.set) vs. in bulk, column by column (ColumnWriter).
+ * <p>
+ * The network tables post their events to a stub event helper that, like the Cytoscape one,
+ * batches the payloads by source and type until flushed (when another event is fired
+ * or flushPayloadEvents is called); the RowsSetEvents and the row values set
+ * per created network are printed after each iteration.
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttributeWriteBenchmark {
+
+  @Param({"true", "false"})
+  public boolean bulk;
+
+  private EventCounter eventHelper;
+  private NetworkTestSupport networkSupport;
+
+  // (the shared state's network factory is not used - these networks post events to the counter)
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    eventHelper = new EventCounter();
+    networkSupport = new CountingNetworkTestSupport(eventHelper);
+  }
+
+  @TearDown(Level.Iteration)
+  public void report() {
+    System.out.println(String.format("%nbulk=%s: %d RowsSetEvents, %d rows set per network",
+      bulk, eventHelper.rowsSetEvents, eventHelper.rowsSet));
+  }
+
+  @Benchmark
+  public CyNetwork createCyNetwork(MappingState state) {
+    eventHelper.reset();
+    final BioPaxMapper mapper = new BioPaxMapper(state.model, networkSupport.getNetworkFactory());
+    mapper.setBulkAttributes(bulk);
+    final CyNetwork network = mapper.createCyNetwork("benchmark", null);
+    eventHelper.flushPayloadEvents(); //what's still pending goes to the listeners eventually
+    return network;
+  }
+
+  // the in-memory network model that posts its events to the given event helper
+  private static final class CountingNetworkTestSupport extends NetworkTestSupport {
+    CountingNetworkTestSupport(CyEventHelper eventHelper) {
+      this.eventHelper = eventHelper;
+      networkFactory = new CyNetworkFactoryImpl(eventHelper, tableMgr, networkTableMgr,
+        new CyTableFactoryImpl(eventHelper, serviceRegistrar), serviceRegistrar);
+    }
+  }
+
+  /*
+   * Event helper stub: keeps the payloads per (source, event type) until flushed,
+   * then counts each such batch of RowsSetEvent payloads as one event (no listeners are called).
+   */
+  private static final class EventCounter implements CyEventHelper {
+    private final Map<Object, Map<Class<?>, Integer>> pending = new IdentityHashMap<Object, Map<Class<?>, Integer>>();
+    long rowsSetEvents;
+    long rowsSet;
+
+    void reset() {
+      pending.clear();
+      rowsSetEvents = 0;
+      rowsSet = 0;
+    }
+
+    @Override
+    public <E extends CyEvent<?>> void fireEvent(E event) {
+      flushPayloadEvents();
+      if (event instanceof RowsSetEvent) {
+        rowsSetEvents++;
+        rowsSet += ((RowsSetEvent) event).getPayloadCollection().size();
+      }
+    }
+
+    @Override
+    public <S, P, E extends CyPayloadEvent<S, P>> void addEventPayload(S source, P payload, Class<E> eventType) {
+      if (source == null || payload == null)
+        return;
+      Map<Class<?>, Integer> counts = pending.get(source);
+      if (counts == null) {
+        counts = new HashMap<Class<?>, Integer>();
+        pending.put(source, counts);
+      }
+      final Integer n = counts.get(eventType);
+      counts.put(eventType, (n == null) ? 1 : n + 1);
+    }
+
+    @Override
+    public void flushPayloadEvents() {
+      for (Map<Class<?>, Integer> counts : pending.values()) {
+        final Integer n = counts.get(RowsSetEvent.class);
+        if (n != null) {
+          rowsSetEvents++;
+          rowsSet += n;
+        }
+      }
+      pending.clear();
+    }
+
+    public void flushPayloadEvents(Object source) {
+      flushPayloadEvents();
+    }
+
+    @Override
+    public void silenceEventSource(Object source) {
+    }
+
+    @Override
+    public void unsilenceEventSource(Object source) {
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a BioPAX model to the full vs. compact hypergraph
+ * (no member/component nodes and edges, no web link attributes; all the interactions, for no seeds).
+ * The network sizes are logged by the mapper (info level) in the compact mode.
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompactModeBenchmark {
+
+  @Param({"false", "true"})
+  public boolean compact;
+
+  @Benchmark
+  public CyNetwork createCyNetwork(MappingState state) {
+    final BioPaxMapper mapper = new BioPaxMapper(state.model, state.networkFactory);
+    mapper.setCompact(compact);
+    return mapper.createCyNetwork("benchmark", null);
+  }
+}
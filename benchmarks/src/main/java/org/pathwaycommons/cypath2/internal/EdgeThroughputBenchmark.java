@@ -0,0 +1,45 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hypergraph network edges created per second (the "edges" counter)
+ * by the BioPAX mapper; the node attributes are lazy (key columns only),
+ * not to dominate the time.
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EdgeThroughputBenchmark {
+
+  @Benchmark
+  public CyNetwork createCyNetwork(MappingState state, Counters counters) {
+    final BioPaxMapper mapper = new BioPaxMapper(state.model, state.networkFactory);
+    mapper.setLazyAttributes(true);
+    final CyNetwork network = mapper.createCyNetwork("benchmark", null);
+    counters.edges += network.getEdgeCount();
+    return network;
+  }
+
+  /**
+   * Reported as the edges/s rate.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long edges;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      edges = 0;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+
+/**
+ * Benchmark data sets of typical sizes.
+ *
+ * @author rodche
+ */
+public enum Fixture {
+  /**
+   * A single pathway (e.g., from a "get" query): 30 reactions.
+   */
+  SMALL_PATHWAY {
+    @Override
+    Model model() {
+      return Fixtures.model(30);
+    }
+  },
+
+  /**
+   * A graph query (neighborhood) result: 600 interactions and 600 reactions around 10 hubs.
+   */
+  MEDIUM_NEIGHBORHOOD {
+    @Override
+    Model model() {
+      return Fixtures.neighborhood(600);
+    }
+  },
+
+  /**
+   * A large top pathway (like Reactome's biggest ones): 5000 reactions.
+   */
+  LARGE_TOP_PATHWAY {
+    @Override
+    Model model() {
+      return Fixtures.model(5000);
+    }
+  };
+
+  /**
+   * @return new (generated, always the same) BioPAX model
+   */
+  abstract Model model();
+}
@@ -0,0 +1,240 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+
+import java.io.*;
+
+/**
+ * Reproducible synthetic BioPAX data (Reactome-like pathways) for the benchmarks.
+ *
+ * @author rodche
+ */
+final class Fixtures {
+
+  static final String XML_BASE = "http://pathwaycommons.org/cypath2/benchmark/";
+
+  private Fixtures() {
+  }
+
+  /**
+   * Generates a top pathway of sub-pathways (ten reactions each);
+   * every reaction has two inputs, a (phosphorylated) output, a catalysis
+   * controlled by a complex, and a publication; proteins (and generic proteins)
+   * share the protein references and xrefs like in real data.
+   *
+   * @param reactions number of biochemical reactions
+   * @return new BioPAX Level3 model
+   */
+  static Model model(int reactions) {
+    final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase(XML_BASE);
+
+    final Provenance provenance = model.addNew(Provenance.class, XML_BASE + "reactome");
+    provenance.setDisplayName("Reactome");
+    final BioSource human = model.addNew(BioSource.class, "http://identifiers.org/taxonomy/9606");
+    human.setDisplayName("Homo sapiens");
+    human.addXref(unificationXref(model, "taxonomy", "9606"));
+    final CellularLocationVocabulary cytosol = model.addNew(CellularLocationVocabulary.class, XML_BASE + "cytosol");
+    cytosol.addTerm("cytosol");
+    final SequenceModificationVocabulary phospho = model.addNew(SequenceModificationVocabulary.class, XML_BASE + "phospho");
+    phospho.addTerm("O-phospho-L-serine");
+
+    // a pool of protein references (shared by many protein states/locations)
+    final int numRefs = Math.max(10, reactions / 2);
+    final ProteinReference[] refs = new ProteinReference[numRefs];
+    for (int i = 0; i < numRefs; i++) {
+      String acc = String.format("P%05d", i);
+      ProteinReference pr = model.addNew(ProteinReference.class, "http://identifiers.org/uniprot/" + acc);
+      pr.setDisplayName("PROT" + i);
+      pr.addName("protein " + i);
+      pr.setOrganism(human);
+      pr.addXref(unificationXref(model, "uniprot knowledgebase", acc));
+      pr.addXref(relationshipXref(model, "hgnc symbol", "GENE" + i));
+      pr.addXref(relationshipXref(model, "ncbi gene", String.valueOf(1000 + i)));
+      refs[i] = pr;
+    }
+
+    final Pathway top = model.addNew(Pathway.class, XML_BASE + "pathway");
+    top.setDisplayName("Top pathway of " + reactions + " reactions");
+    top.addDataSource(provenance);
+    top.setOrganism(human);
+
+    Pathway sub = null;
+    for (int r = 0; r < reactions; r++) {
+      if (r % 10 == 0) {
+        sub = model.addNew(Pathway.class, XML_BASE + "pathway_" + (r / 10));
+        sub.setDisplayName("Sub-pathway " + (r / 10));
+        sub.addDataSource(provenance);
+        top.addPathwayComponent(sub);
+      }
+
+      final BiochemicalReaction rxn = model.addNew(BiochemicalReaction.class, XML_BASE + "reaction_" + r);
+      rxn.setDisplayName("Reaction " + r);
+      rxn.addDataSource(provenance);
+      rxn.addXref(publicationXref(model, String.valueOf(100000 + r % 997)));
+      sub.addPathwayComponent(rxn);
+
+      final Protein a = protein(model, refs[r % numRefs], "in_a_" + r, cytosol);
+      final Protein b = protein(model, refs[(r * 7 + 1) % numRefs], "in_b_" + r, cytosol);
+      final Protein c = protein(model, refs[r % numRefs], "out_" + r, cytosol);
+      final ModificationFeature mf = model.addNew(ModificationFeature.class, XML_BASE + "mf_" + r);
+      mf.setModificationType(phospho);
+      c.addFeature(mf);
+      rxn.addLeft(a);
+      rxn.addLeft(b);
+      rxn.addRight(c);
+
+      // every tenth reaction also consumes a generic protein (with member proteins)
+      if (r % 10 == 5) {
+        final Protein generic = model.addNew(Protein.class, XML_BASE + "generic_" + r);
+        generic.setDisplayName("Generic " + r);
+        generic.addMemberPhysicalEntity(protein(model, refs[(r + 2) % numRefs], "member1_" + r, cytosol));
+        generic.addMemberPhysicalEntity(protein(model, refs[(r + 3) % numRefs], "member2_" + r, cytosol));
+        rxn.addLeft(generic);
+      }
+
+      final Complex complex = model.addNew(Complex.class, XML_BASE + "complex_" + r);
+      complex.setDisplayName("Complex " + r);
+      complex.setCellularLocation(cytosol);
+      complex.addComponent(protein(model, refs[(r * 3 + 2) % numRefs], "comp_a_" + r, cytosol));
+      complex.addComponent(protein(model, refs[(r * 5 + 3) % numRefs], "comp_b_" + r, cytosol));
+
+      final Catalysis cat = model.addNew(Catalysis.class, XML_BASE + "catalysis_" + r);
+      cat.addDataSource(provenance);
+      cat.setControlType(ControlType.ACTIVATION);
+      cat.addController(complex);
+      cat.addControlled(rxn);
+      sub.addPathwayComponent(cat);
+    }
+
+    return model;
+  }
+
+  /**
+   * Generates a (graph query) neighborhood-like result: a few hub proteins,
+   * their binding partners (molecular interactions), and the state changes
+   * of the partners (biochemical reactions) catalyzed by the hubs; no pathways.
+   *
+   * @param interactions number of molecular interactions (and as many reactions)
+   * @return new BioPAX Level3 model
+   */
+  static Model neighborhood(int interactions) {
+    final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase(XML_BASE);
+
+    final Provenance provenance = model.addNew(Provenance.class, XML_BASE + "biogrid");
+    provenance.setDisplayName("BioGRID");
+    final CellularLocationVocabulary cytosol = model.addNew(CellularLocationVocabulary.class, XML_BASE + "cytosol");
+    cytosol.addTerm("cytosol");
+    final SequenceModificationVocabulary phospho = model.addNew(SequenceModificationVocabulary.class, XML_BASE + "phospho");
+    phospho.addTerm("O-phospho-L-serine");
+
+    final int numHubs = 10;
+    final ProteinReference[] refs = new ProteinReference[numHubs + interactions];
+    for (int i = 0; i < refs.length; i++) {
+      String acc = String.format("Q%05d", i);
+      ProteinReference pr = model.addNew(ProteinReference.class, "http://identifiers.org/uniprot/" + acc);
+      pr.setDisplayName("NPROT" + i);
+      pr.addXref(unificationXref(model, "uniprot knowledgebase", acc));
+      pr.addXref(relationshipXref(model, "hgnc symbol", "NGENE" + i));
+      refs[i] = pr;
+    }
+    final Protein[] hubs = new Protein[numHubs];
+    for (int h = 0; h < numHubs; h++)
+      hubs[h] = protein(model, refs[h], "hub_" + h, cytosol);
+
+    for (int i = 0; i < interactions; i++) {
+      final Protein hub = hubs[i % numHubs];
+      final Protein partner = protein(model, refs[numHubs + i], "partner_" + i, cytosol);
+
+      final MolecularInteraction mi = model.addNew(MolecularInteraction.class, XML_BASE + "mi_" + i);
+      mi.setDisplayName(refs[i % numHubs].getDisplayName() + " binds " + refs[numHubs + i].getDisplayName());
+      mi.addDataSource(provenance);
+      mi.addXref(publicationXref(model, String.valueOf(200000 + i % 499)));
+      mi.addParticipant(hub);
+      mi.addParticipant(partner);
+
+      final Protein phosphorylated = protein(model, refs[numHubs + i], "partner_p_" + i, cytosol);
+      final ModificationFeature mf = model.addNew(ModificationFeature.class, XML_BASE + "nmf_" + i);
+      mf.setModificationType(phospho);
+      phosphorylated.addFeature(mf);
+      final BiochemicalReaction rxn = model.addNew(BiochemicalReaction.class, XML_BASE + "nrxn_" + i);
+      rxn.setDisplayName("Phosphorylation of " + refs[numHubs + i].getDisplayName());
+      rxn.addDataSource(provenance);
+      rxn.addLeft(partner);
+      rxn.addRight(phosphorylated);
+
+      final Catalysis cat = model.addNew(Catalysis.class, XML_BASE + "ncat_" + i);
+      cat.addDataSource(provenance);
+      cat.setControlType(ControlType.ACTIVATION);
+      cat.addController(hub);
+      cat.addControlled(rxn);
+    }
+
+    return model;
+  }
+
+  /**
+   * Writes the model to a temporary BioPAX (RDF/XML) file.
+   *
+   * @param model BioPAX model
+   * @return new file
+   * @throws IOException when the file cannot be written
+   */
+  static File owl(final Model model) throws IOException {
+    final File file = File.createTempFile("cypath2-benchmark", ".owl");
+    file.deleteOnExit();
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+      new SimpleIOHandler(BioPAXLevel.L3).convertToOWL(model, os);
+    }
+    return file;
+  }
+
+  private static Protein protein(Model model, ProteinReference pr, String id, CellularLocationVocabulary loc) {
+    final Protein p = model.addNew(Protein.class, XML_BASE + "protein_" + id);
+    p.setEntityReference(pr);
+    p.addName(pr.getDisplayName());
+    p.setCellularLocation(loc);
+    return p;
+  }
+
+  private static UnificationXref unificationXref(Model model, String db, String id) {
+    final String uri = XML_BASE + "UnificationXref_" + db.replace(' ', '_') + "_" + id;
+    UnificationXref x = (UnificationXref) model.getByID(uri);
+    if (x == null) {
+      x = model.addNew(UnificationXref.class, uri);
+      x.setDb(db);
+      x.setId(id);
+    }
+    return x;
+  }
+
+  private static RelationshipXref relationshipXref(Model model, String db, String id) {
+    final String uri = XML_BASE + "RelationshipXref_" + db.replace(' ', '_') + "_" + id;
+    RelationshipXref x = (RelationshipXref) model.getByID(uri);
+    if (x == null) {
+      x = model.addNew(RelationshipXref.class, uri);
+      x.setDb(db);
+      x.setId(id);
+    }
+    return x;
+  }
+
+  private static PublicationXref publicationXref(Model model, String pmid) {
+    final String uri = XML_BASE + "PublicationXref_pubmed_" + pmid;
+    PublicationXref x = (PublicationXref) model.getByID(uri);
+    if (x == null) {
+      x = model.addNew(PublicationXref.class, uri);
+      x.setDb("pubmed");
+      x.setId(pmid);
+      x.setTitle("Article " + pmid);
+      x.setYear(2000 + Integer.parseInt(pmid) % 20);
+      x.addAuthor("Author " + pmid);
+      x.addSource("Journal");
+    }
+    return x;
+  }
+}
@@ -0,0 +1,158 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.Entity;
+import org.biopax.paxtools.pattern.miner.SIFEnum;
+import org.biopax.paxtools.pattern.miner.SIFInteraction;
+import org.biopax.paxtools.pattern.miner.SIFType;
+import org.biopax.paxtools.pattern.util.Blacklist;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BioPAX import hot paths - parsing, post-processing, mapping to a network,
+ * node attributes, BioPAX to SIF conversion and SIF parsing - run headless
+ * against the in-memory Cytoscape network model (NetworkTestSupport).
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+  // the default BioPaxReaderTask patterns plus interacts-with (for the neighborhood)
+  static final SIFType[] SIF_TYPES = {
+    SIFEnum.CONTROLS_EXPRESSION_OF,
+    SIFEnum.CONTROLS_STATE_CHANGE_OF,
+    SIFEnum.IN_COMPLEX_WITH,
+    SIFEnum.INTERACTS_WITH
+  };
+
+  @Param({"SMALL_PATHWAY", "MEDIUM_NEIGHBORHOOD", "LARGE_TOP_PATHWAY"})
+  public Fixture fixture;
+
+  private Model model;
+  private File owl;
+  private String[] sifLines;
+  private List<SIFInteraction> sifInteractions;
+  private CyNetworkFactory networkFactory;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    App.blacklist = new Blacklist(App.class.getResourceAsStream("/blacklist.txt"));
+    model = BioPaxMapper.prepare(fixture.model());
+    owl = Fixtures.owl(model);
+    final ByteArrayOutputStream sif = new ByteArrayOutputStream();
+    BioPaxMapper.convertToCustomSIF(fixture.model(), SIF_TYPES, sif);
+    final String text = new String(sif.toByteArray(), StandardCharsets.UTF_8);
+    sifLines = text.isEmpty() ? new String[0] : text.split("\n");
+    // sorted, like the import does
+    sifInteractions = new ArrayList<SIFInteraction>(BioPaxMapper.toSifInteractions(fixture.model(), SIF_TYPES));
+    Collections.sort(sifInteractions);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    // fresh table/network managers (not to accumulate the networks created by previous iterations)
+    networkFactory = new NetworkTestSupport().getNetworkFactory();
+  }
+
+  @Benchmark
+  public Model read() throws IOException {
+    try (InputStream is = new BufferedInputStream(new FileInputStream(owl))) {
+      return BioPaxMapper.read(is);
+    }
+  }
+
+  @Benchmark
+  public Model fixDisplayName() {
+    // (after the first call, it checks but does not change anything; that's the common case)
+    BioPaxMapper.fixDisplayName(model);
+    return model;
+  }
+
+  @Benchmark
+  public CyNetwork createCyNetwork() {
+    return new BioPaxMapper(model, networkFactory).createCyNetwork("benchmark", null);
+  }
+
+  @Benchmark
+  public CyNetwork createAttributesFromProperties(NodesState state) {
+    final StringPool pool = new StringPool();
+    for (int i = 0; i < state.entities.size(); i++)
+      BioPaxMapper.createAttributesFromProperties(state.entities.get(i), model, state.nodes.get(i), state.network, pool);
+    return state.network;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream convertToCustomSIF(FreshModelState state) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BioPaxMapper.convertToCustomSIF(state.model, SIF_TYPES, out);
+    return out;
+  }
+
+  @Benchmark
+  public CyNetwork parseSif() {
+    final CyNetwork network = networkFactory.createNetwork();
+    final CustomSifParser parser = new CustomSifParser(network);
+    for (String line : sifLines)
+      parser.parse(line);
+    return network;
+  }
+
+  @Benchmark
+  public CyNetwork addSifInteractions() {
+    // the BINARY mode import path (no SIF text)
+    final CyNetwork network = networkFactory.createNetwork();
+    final CustomSifParser parser = new CustomSifParser(network);
+    for (SIFInteraction inter : sifInteractions)
+      parser.add(inter);
+    return network;
+  }
+
+  /**
+   * A new network with a node for each entity (but no attributes yet).
+   */
+  @State(Scope.Thread)
+  public static class NodesState {
+    CyNetwork network;
+    List<Entity> entities;
+    List<CyNode> nodes;
+
+    @Setup(Level.Invocation)
+    public void setup(ImportBenchmark benchmark) {
+      network = benchmark.networkFactory.createNetwork();
+      entities = new ArrayList<Entity>(benchmark.model.getObjects(Entity.class));
+      nodes = new ArrayList<CyNode>(entities.size());
+      for (int i = 0; i < entities.size(); i++)
+        nodes.add(network.addNode());
+    }
+  }
+
+  /**
+   * A new model (the SIF conversion normalizes, i.e., modifies it).
+   */
+  @State(Scope.Thread)
+  public static class FreshModelState {
+    Model model;
+
+    @Setup(Level.Invocation)
+    public void setup(ImportBenchmark benchmark) {
+      model = BioPaxMapper.prepare(benchmark.fixture.model());
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level2.pathway;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BioPAX Level2 to Level3 conversion: all at once (LevelUpgrader) vs. in chunks;
+ * prints the peak heap usage during the conversion.
+ * <p>
+ * Uses the app's test l2-sample.owl replicated the number of times (different URIs),
+ * with all the copies' pathways in one top pathway, like in a real export,
+ * or, if set, the -Dcypath2.l2.file=... BioPAX L2 file.
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class LevelUpgradeBenchmark {
+
+  @Param({"2000", "20000"})
+  public int copies;
+
+  @Param({"0", "50000"})
+  public int chunkSize;
+
+  private Model l2;
+  private long peak;
+
+  @Setup(Level.Invocation)
+  public void setup() throws IOException {
+    l2 = null;
+    System.gc();
+    l2 = l2Model(copies);
+    System.gc();
+    resetPeakUsage();
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDown() {
+    peak = Math.max(peak, peakUsage());
+  }
+
+  @TearDown(Level.Iteration)
+  public void report() {
+    System.out.println(String.format("%nchunkSize=%d, copies=%d: peak heap %d MB",
+      chunkSize, copies, peak / (1024 * 1024)));
+    peak = 0;
+  }
+
+  @Benchmark
+  public Model upgrade() {
+    return new ChunkedLevelUpgrader(chunkSize).filter(l2);
+  }
+
+  static Model l2Model(int copies) throws IOException {
+    final SimpleIOHandler handler = new SimpleIOHandler(BioPAXLevel.L2);
+    final String file = System.getProperty("cypath2.l2.file");
+    if (file != null) {
+      try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+        return handler.convertFromOWL(is);
+      }
+    }
+
+    final String sample;
+    try (Scanner scanner = new Scanner(LevelUpgradeBenchmark.class.getResourceAsStream("/l2-sample.owl"),
+      StandardCharsets.UTF_8.name())) {
+      sample = scanner.useDelimiter("\\A").next();
+    }
+    final Model model = BioPAXLevel.L2.getDefaultFactory().createModel();
+    model.setXmlBase("http://pathwaycommons.org/cypath2/benchmark/l2#");
+    final pathway top = model.addNew(pathway.class, model.getXmlBase() + "top");
+    top.setNAME("Top pathway of " + copies + " copies");
+    for (int i = 0; i < copies; i++) {
+      final String owl = sample.replace("benchmark/l2#", "benchmark/l2/" + i + "#");
+      final Model copy = handler.convertFromOWL(new ByteArrayInputStream(owl.getBytes(StandardCharsets.UTF_8)));
+      for (BioPAXElement e : copy.getObjects()) {
+        model.add(e);
+        if (e instanceof pathway)
+          top.addPATHWAY_COMPONENTS((pathway) e);
+      }
+    }
+    return model;
+  }
+
+  private static void resetPeakUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP)
+        pool.resetPeakUsage();
+  }
+
+  private static long peakUsage() {
+    long sum = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP)
+        sum += pool.getPeakUsage().getUsed();
+    return sum;
+  }
+}
@@ -0,0 +1,36 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.pattern.util.Blacklist;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.NetworkTestSupport;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shared setup of the network mapping benchmarks: the SIF blacklist,
+ * the fixture's model (post-processed like after parsing) and a network factory
+ * of fresh in-memory table/network managers per iteration
+ * (not to accumulate the networks created by previous iterations).
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+public class MappingState {
+
+  @Param({"MEDIUM_NEIGHBORHOOD", "LARGE_TOP_PATHWAY"})
+  public Fixture fixture;
+
+  Model model;
+  CyNetworkFactory networkFactory;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    App.blacklist = new Blacklist(App.class.getResourceAsStream("/blacklist.txt"));
+    model = BioPaxMapper.prepare(fixture.model());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    networkFactory = new NetworkTestSupport().getNetworkFactory();
+  }
+}
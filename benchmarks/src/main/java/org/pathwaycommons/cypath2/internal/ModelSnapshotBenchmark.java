@@ -0,0 +1,46 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing BioPAX RDF/XML vs. loading the binary model snapshot.
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelSnapshotBenchmark {
+
+  @Param({"100", "2000", "20000"})
+  public int reactions;
+
+  private File owl;
+  private File snapshot;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    owl = Fixtures.owl(Fixtures.model(reactions));
+    snapshot = File.createTempFile("cypath2-benchmark", ".snap");
+    snapshot.deleteOnExit();
+    ModelSnapshot.write(BioPaxMapper.read(null, owl), snapshot);
+  }
+
+  @Benchmark
+  public Model parseOwl() throws IOException {
+    return BioPaxMapper.read(null, owl);
+  }
+
+  @Benchmark
+  public Model loadSnapshot() throws IOException {
+    return ModelSnapshot.read(snapshot);
+  }
+}
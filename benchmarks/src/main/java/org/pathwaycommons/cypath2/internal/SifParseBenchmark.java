@@ -0,0 +1,150 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.NetworkTestSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custom SIF rows parsed (and added to a network) per second (the "rows" counter),
+ * from a generated extended-SIF file: the rows (interactions) between some thousand genes,
+ * with a few repeated data sources and pathway names and some PMIDs;
+ * the list attributes are plain or dictionary-encoded (then the memory saved estimate is logged).
+ * <p>
+ * After each iteration, it prints the heap retained per network (measured: used heap after GC
+ * with vs. without the iteration's networks) and, for the encoded lists, how many distinct list
+ * instances the edge table returns vs. distinct code lists (whether the table keeps the shared lists).
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SifParseBenchmark {
+
+  private static final String[] TYPES = {"controls-state-change-of", "controls-expression-of",
+    "in-complex-with", "interacts-with", "catalysis-precedes"};
+  private static final String[] DATASOURCES = {"Reactome", "PID", "HumanCyc", "PANTHER", "KEGG"};
+
+  @Param({"100000", "1000000"})
+  public int rows;
+
+  // dictionary-encoded edge list attributes
+  @Param({"false", "true"})
+  public boolean encoded;
+
+  private File sif;
+  private CyNetworkFactory networkFactory;
+  private CyNetwork last;
+  private int networks;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    sif = File.createTempFile("benchmark", ".sif");
+    sif.deleteOnExit();
+    final Random random = new Random(42);
+    final int genes = Math.max(rows / 20, 100);
+    try (Writer writer = Files.newBufferedWriter(sif.toPath(), StandardCharsets.UTF_8)) {
+      for (int i = 0; i < rows; i++) {
+        writer.write("http://identifiers.org/uniprot/P" + random.nextInt(genes));
+        writer.write('\t');
+        writer.write(TYPES[random.nextInt(TYPES.length)]);
+        writer.write('\t');
+        writer.write("http://identifiers.org/uniprot/P" + random.nextInt(genes));
+        writer.write('\t');
+        writer.write(DATASOURCES[random.nextInt(DATASOURCES.length)] + ";"
+          + DATASOURCES[random.nextInt(DATASOURCES.length)]);
+        writer.write('\t');
+        writer.write(String.valueOf(10000000 + random.nextInt(20000000)));
+        writer.write('\t');
+        writer.write("Pathway " + random.nextInt(200) + ";Pathway " + random.nextInt(200));
+        writer.write('\n');
+      }
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    networkFactory = new NetworkTestSupport().getNetworkFactory();
+    networks = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void report() {
+    final String sharing = (encoded) ? sharing(last) : "";
+    final long with = usedHeap();
+    // the factory's table managers keep all the networks of the iteration
+    last = null;
+    networkFactory = null;
+    final long without = usedHeap();
+    System.out.println(String.format("%nrows=%d, encoded=%s: %.1f MB retained per network%s",
+      rows, encoded, (with - without) / 1048576.0 / Math.max(networks, 1), sharing));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    sif.delete();
+  }
+
+  @Benchmark
+  public CyNetwork parse(Counters counters) throws IOException {
+    final CyNetwork network = networkFactory.createNetwork();
+    final CustomSifParser parser = new CustomSifParser(network, encoded);
+    try (Reader reader = Files.newBufferedReader(sif.toPath(), StandardCharsets.UTF_8)) {
+      counters.rows += parser.parse(reader);
+    }
+    parser.finish();
+    last = network;
+    networks++;
+    return network;
+  }
+
+  // edges' code lists: distinct instances (as returned by the table) vs. distinct values
+  private static String sharing(CyNetwork network) {
+    final StringBuilder sb = new StringBuilder();
+    for (String column : CustomSifParser.LIST_COLUMNS) {
+      final Set<List<Integer>> instances = Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+      final Set<List<Integer>> values = new HashSet<List<Integer>>();
+      for (CyRow row : network.getDefaultEdgeTable().getAllRows()) {
+        final List<Integer> codes = row.getList(column + SifDictionary.CODES_SUFFIX, Integer.class);
+        if (codes != null) {
+          instances.add(codes);
+          values.add(codes);
+        }
+      }
+      sb.append(String.format("; %s: %d list instances, %d distinct lists", column, instances.size(), values.size()));
+    }
+    return sb.toString();
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Reported as the rows/s rate.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long rows;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rows = 0;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.pattern.miner.SIFEnum;
+import org.biopax.paxtools.pattern.miner.SIFInteraction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BioPAX to SIF conversion (all the SIF types) with the patterns searched
+ * one after another vs. in parallel; the per-type times are logged (info level).
+ *
+ * @author rodche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SifSearchBenchmark {
+
+  @Param({"false", "true"})
+  public boolean parallel;
+
+  private Model model;
+
+  // a new model (the SIF conversion normalizes, i.e., modifies it; the shared one is not used)
+  @Setup(Level.Invocation)
+  public void setupInvocation(MappingState state) {
+    model = BioPaxMapper.prepare(state.fixture.model());
+  }
+
+  @Benchmark
+  public Set<SIFInteraction> toSifInteractions() {
+    return BioPaxMapper.toSifInteractions(model, SIFEnum.values(), parallel);
+  }
+}
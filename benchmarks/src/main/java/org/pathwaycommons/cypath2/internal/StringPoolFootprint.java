@@ -0,0 +1,67 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Retained heap of a BioPAX model read with vs. without the string de-duplication.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar org.pathwaycommons.cypath2.internal.StringPoolFootprint [file.owl[.gz]]
+ * (without the file, it generates a synthetic model of 20000 reactions);
+ * for the detailed heap histogram, add -Dcypath2.histo=true (it then pauses to let you
+ * run 'jmap -histo:live &lt;pid&gt;' after each model is loaded).
+ *
+ * @author rodche
+ */
+public final class StringPoolFootprint {
+
+  public static void main(String[] args) throws IOException {
+    final File file = (args.length > 0) ? new File(args[0]) : Fixtures.owl(Fixtures.model(20000));
+    final boolean pause = Boolean.getBoolean("cypath2.histo");
+
+    long base = usedHeap();
+    Model model = read(file, null);
+    long plain = usedHeap() - base;
+    System.out.println(String.format("without string pool: %d objects, retained %d MB",
+      model.getObjects().size(), plain / (1024 * 1024)));
+    if (pause) pause();
+    model = null;
+
+    base = usedHeap();
+    final StringPool pool = new StringPool();
+    model = read(file, pool);
+    long pooled = usedHeap() - base;
+    System.out.println(String.format("with string pool: %d objects, retained %d MB (%s)",
+      model.getObjects().size(), pooled / (1024 * 1024), pool));
+    if (pause) pause();
+
+    System.out.println(String.format("saved: %d MB (%.1f%%)",
+      (plain - pooled) / (1024 * 1024), 100.0 * (plain - pooled) / plain));
+  }
+
+  private static Model read(File file, StringPool pool) throws IOException {
+    InputStream is = new BufferedInputStream(new FileInputStream(file));
+    try {
+      if (file.getName().endsWith(".gz"))
+        is = new GZIPInputStream(is);
+      return BioPaxMapper.read(is, pool);
+    } finally {
+      is.close();
+    }
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static void pause() throws IOException {
+    System.out.println("pid@host: " + ManagementFactory.getRuntimeMXBean().getName()
+      + "; press Enter to continue...");
+    System.in.read();
+  }
+}
@@ -39,6 +39,8 @@ final class App extends AbstractWebServiceGUIClient implements NetworkImportWebS
   static CPathClient client; // shared stateless cPath2 client
   static Blacklist blacklist; // for the SIF converter, to avoid ubiquitous small molecules
   static CyServices cyServices; //Cy3 services
+  static ResultCache resultCache; //local cache of query results (can be null - disabled)
+  static NormalizedModelCache normalizedModelCache; //models normalized for SIF (can be null - disabled)
   static AppOptions options = new AppOptions(); //global query options/filters
   static BiopaxVisualStyleUtil visualStyleUtil;
   final JList advQueryPanelItemsList;
@@ -92,6 +94,33 @@ final class App extends AbstractWebServiceGUIClient implements NetworkImportWebS
     gui = new JPanel();
   }
 
+  /*
+   * Gets the app option value from the Cytoscape properties
+   * (or the default value, e.g., when running headless, without the services).
+   */
+  static String getProperty(String key, String defaultValue) {
+    if (cyServices == null || cyServices.cyProperty == null)
+      return defaultValue;
+    String value = cyServices.cyProperty.getProperties().getProperty(key);
+    return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+  }
+
+  /*
+   * Gets the numeric app option value from the Cytoscape properties
+   * (or the default value when it is not set or is not a number).
+   */
+  static long getLongProperty(String key, long defaultValue) {
+    final String value = getProperty(key, null);
+    if (value == null)
+      return defaultValue;
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Bad " + key + " property value: " + value + "; using the default: " + defaultValue);
+      return defaultValue;
+    }
+  }
+
   /*
    * Creates a Titled Border with appropriate font settings.
    */
@@ -134,6 +163,11 @@ final class App extends AbstractWebServiceGUIClient implements NetworkImportWebS
             uriToDatasourceNameMap.put(bs.getUri(), bs.getName());
           }
           uriToOrganismNameMap.put("http://identifiers.org/taxonomy/9606", "Homo sapiens");
+          // the set of datasources changes with every new PC data release -
+          // use it as the server/data version to expire the cached query results
+          if (resultCache != null)
+            resultCache.setVersion(client.getEndPointURL() + "#"
+              + new TreeMap<String, String>(uriToDatasourceNameMap).hashCode());
         } catch (CPathException e) {
           throw new RuntimeException(e);
         }
@@ -169,7 +203,12 @@ final class App extends AbstractWebServiceGUIClient implements NetworkImportWebS
         .sources(ids)
         .organismFilter(options.selectedOrganisms())
         .datasourceFilter(options.selectedDatasources())
-      , null));
+      , null, Arrays.asList(ids),
+      ResultCache.Key.graph(GraphType.NEIGHBORHOOD)
+        .direction(CPathClient.Direction.UNDIRECTED)
+        .sources(Arrays.asList(ids))
+        .organismFilter(options.selectedOrganisms())
+        .datasourceFilter(options.selectedDatasources())));
   }
 
   /*
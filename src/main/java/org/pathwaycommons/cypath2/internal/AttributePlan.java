@@ -0,0 +1,154 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.ObjectPropertyEditor;
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.level3.Entity;
+import org.biopax.paxtools.model.level3.Stoichiometry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled node attributes extraction plan for a BioPAX type.
+ * <p>
+ * The BioPAX properties of the type, except for entity-range ones (mapped to edges),
+ * stoichiometry, nextStep, and name, become table columns named by the property path,
+ * e.g., "entityReference/organism/displayName"; single-cardinality object properties
+ * are followed further (using the plan of the value's type), multiple-cardinality
+ * ones (xref, memberEntityReference, etc.) are not. The plans are compiled once
+ * (per type and property path) from the Paxtools editor map; they are immutable and thread-safe.
+ *
+ * @author rodche
+ */
+final class AttributePlan {
+
+  // by property path prefix and BioPAX type
+  private static final ConcurrentMap<String, AttributePlan> PLANS = new ConcurrentHashMap<String, AttributePlan>();
+
+  private final Entry[] entries;
+
+  private AttributePlan(BioPAXElement prototype, String prefix) {
+    final List<Entry> list = new ArrayList<Entry>();
+    for (PropertyEditor editor : SimpleEditorMap.L3.getEditorsOf(prototype)) {
+      if (skip(editor))
+        continue;
+      final boolean object = editor instanceof ObjectPropertyEditor;
+      list.add(new Entry(editor, prefix + editor.getProperty(), editor.isMultipleCardinality(),
+        object && !editor.isMultipleCardinality()));
+    }
+    // same order every time (editors come in a set)
+    Collections.sort(list, (a, b) -> a.column.compareTo(b.column));
+    this.entries = list.toArray(new Entry[list.size()]);
+  }
+
+  /**
+   * Gets the (compiled once) plan for the BioPAX element's type.
+   *
+   * @param bpe BioPAX element
+   * @return plan
+   */
+  static AttributePlan of(BioPAXElement bpe) {
+    return of(bpe, "");
+  }
+
+  private static AttributePlan of(BioPAXElement bpe, String prefix) {
+    final String key = prefix + "|" + bpe.getModelInterface().getName();
+    AttributePlan plan = PLANS.get(key);
+    if (plan == null) {
+      plan = new AttributePlan(bpe, prefix);
+      AttributePlan prev = PLANS.putIfAbsent(key, plan);
+      if (prev != null)
+        plan = prev;
+    }
+    return plan;
+  }
+
+  /**
+   * Extracts the attribute values of the element.
+   *
+   * @param bpe        BioPAX element (of the plan's type)
+   * @param columns    column name to value (String or List of String) map to add to
+   * @param stringPool string pool (can be null)
+   */
+  void extract(BioPAXElement bpe, Map<String, Object> columns, StringPool stringPool) {
+    final Deque<BioPAXElement> path = new ArrayDeque<BioPAXElement>();
+    path.push(bpe);
+    extract(bpe, columns, stringPool, path);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void extract(BioPAXElement bpe, Map<String, Object> columns, StringPool stringPool,
+                       Deque<BioPAXElement> path) {
+    for (Entry entry : entries) {
+      for (Object obj : entry.editor.getValueFromBean(bpe)) {
+        if (obj == null || entry.editor.isUnknown(obj))
+          continue;
+
+        String value = obj.toString();
+        if (!isBlank(value)) {
+          if (stringPool != null)
+            value = stringPool.intern(value);
+          if (entry.multiple) {
+            List<String> values = (List<String>) columns.get(entry.column);
+            if (values == null) {
+              values = new ArrayList<String>();
+              columns.put(entry.column, values);
+            }
+            if (!values.contains(value))
+              values.add(value);
+          } else {
+            columns.put(entry.column, value);
+          }
+        }
+
+        // go deeper into single-cardinality object property values (not to the ones already on the path)
+        if (entry.follow && obj instanceof BioPAXElement && !path.contains(obj)) {
+          final BioPAXElement child = (BioPAXElement) obj;
+          path.push(child);
+          of(child, entry.column + "/").extract(child, columns, stringPool, path);
+          path.pop();
+        }
+      }
+    }
+  }
+
+  // entity-range properties map to edges rather than attributes;
+  // several utility class ranges are skipped too (or done another way)
+  private static boolean skip(PropertyEditor editor) {
+    final String prop = editor.getProperty();
+    if (editor instanceof ObjectPropertyEditor) {
+      Class<?> c = editor.getRange();
+      return Entity.class.isAssignableFrom(c)
+        || Stoichiometry.class.isAssignableFrom(c)
+        || "nextStep".equals(prop);
+    }
+    return "name".equals(prop);
+  }
+
+  // empty or just square brackets (e.g., an empty collection's toString)
+  private static boolean isBlank(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != '[' && c != ']')
+        return false;
+    }
+    return true;
+  }
+
+  private static final class Entry {
+    final PropertyEditor editor;
+    final String column;
+    final boolean multiple;
+    final boolean follow;
+
+    Entry(PropertyEditor editor, String column, boolean multiple, boolean follow) {
+      this.editor = editor;
+      this.column = column;
+      this.multiple = multiple;
+      this.follow = follow;
+    }
+  }
+}
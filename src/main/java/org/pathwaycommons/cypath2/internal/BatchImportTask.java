@@ -0,0 +1,256 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.controller.SimpleMerger;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ProvidesTitle;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports several BioPAX files at once: parses them in parallel
+ * (on a bounded thread pool), then either maps each model to its own
+ * sub-network of one network collection or merges the models and creates one network.
+ *
+ * @author rodche
+ */
+final class BatchImportTask extends AbstractTask {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchImportTask.class);
+
+  static final String PROP_THREADS = "cypath2.batch.threads";
+
+  @Tunable(description = "Merge all into one network", groups = {"Options"},
+    tooltip = "Merge the BioPAX models (by URI) and create one network " +
+      "instead of one network per file (in the same collection)", gravity = 500)
+  public boolean merge = false;
+
+  private final List<File> files;
+  private final List<ProgressInputStream> streams;
+  private volatile BioPaxMapper mapper;
+  // one (thread-safe) pool for all the files: they share many strings (db names, CV terms...)
+  private final StringPool stringPool = new StringPool();
+
+  /**
+   * Constructor.
+   *
+   * @param files BioPAX (RDF/XML) files; can be gzipped (*.gz)
+   */
+  BatchImportTask(List<File> files) {
+    this.files = new ArrayList<File>(files);
+    this.streams = new CopyOnWriteArrayList<ProgressInputStream>();
+  }
+
+  @ProvidesTitle()
+  public String tunableDialogTitle() {
+    return "Import BioPAX files";
+  }
+
+  @Override
+  public void run(final TaskMonitor taskMonitor) throws Exception {
+    taskMonitor.setTitle("BioPAX batch import");
+    taskMonitor.setProgress(0.0);
+    if (cancelled || files.isEmpty()) return;
+
+    final long start = System.currentTimeMillis();
+    final Report[] reports = new Report[files.size()];
+    long totalBytes = 0;
+    for (int i = 0; i < files.size(); i++) {
+      reports[i] = new Report(files.get(i));
+      totalBytes += files.get(i).length();
+    }
+
+    // parse the files in parallel (each BioPAX model is independent)
+    final int threads = (int) Math.max(1, Math.min(files.size(),
+      App.getLongProperty(PROP_THREADS, Runtime.getRuntime().availableProcessors())));
+    taskMonitor.setStatusMessage("Reading " + files.size() + " BioPAX files using " + threads + " threads...");
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    final List<Future<Model>> futures = new ArrayList<Future<Model>>(files.size());
+    try {
+      for (final Report report : reports) {
+        futures.add(pool.submit(new Callable<Model>() {
+          @Override
+          public Model call() throws Exception {
+            return read(report);
+          }
+        }));
+      }
+      pool.shutdown();
+
+      // aggregate progress (reading - up to 50%)
+      while (!pool.awaitTermination(250, TimeUnit.MILLISECONDS)) {
+        if (cancelled) return;
+        if (totalBytes > 0) {
+          long bytes = 0;
+          for (ProgressInputStream s : streams)
+            bytes += s.getCount();
+          taskMonitor.setProgress(0.5 * Math.min(1.0, (double) bytes / totalBytes));
+        }
+      }
+      taskMonitor.setProgress(0.5);
+
+      // map to Cytoscape networks (one at a time)
+      final List<Model> models = new ArrayList<Model>(files.size());
+      for (int i = 0; i < reports.length; i++) {
+        try {
+          Model model = futures.get(i).get();
+          if (model != null && !model.getObjects().isEmpty())
+            models.add(model);
+          else if (reports[i].error == null)
+            reports[i].error = "no BioPAX data";
+        } catch (ExecutionException e) {
+          reports[i].error = String.valueOf(e.getCause());
+          LOGGER.warn("Failed to read " + reports[i].file, e.getCause());
+        }
+        futures.set(i, null); //release
+      }
+      if (cancelled) return;
+
+      // the views are laid out one by one after all the networks are mapped
+      final TaskIterator layouts = new TaskIterator();
+      if (merge && models.size() > 1) {
+        taskMonitor.setStatusMessage("Merging " + models.size() + " BioPAX models...");
+        final long t = System.currentTimeMillis();
+        final Model merged = BioPAXLevel.L3.getDefaultFactory().createModel();
+        merged.setXmlBase(models.get(0).getXmlBase());
+        new SimpleMerger(SimpleEditorMap.L3).merge(merged, models.toArray(new Model[models.size()]));
+        models.clear();
+        LOGGER.info("Merged into " + merged.getObjects().size() + " BioPAX objects in "
+          + (System.currentTimeMillis() - t) + " ms");
+        final Report report = new Report(null);
+        report.mergeTime = System.currentTimeMillis() - t;
+        report.objects = merged.getObjects().size();
+        mapAndRegister(merged, "Merged " + files.size() + " BioPAX files", null, report, layouts);
+        log(reports, report, start);
+      } else {
+        CyRootNetwork rootNetwork = null;
+        int n = 0;
+        for (Report report : reports) {
+          if (report.error != null)
+            continue;
+          if (cancelled) return;
+          taskMonitor.setStatusMessage("Mapping " + report.file.getName() + " to a network...");
+          final CyNetwork network = mapAndRegister(models.get(n), report.file.getName(),
+            rootNetwork, report, layouts);
+          models.set(n++, null); //release
+          if (network != null && rootNetwork == null)
+            rootNetwork = App.cyServices.rootNetworkManager.getRootNetwork(network);
+          taskMonitor.setProgress(0.5 + 0.5 * n / models.size());
+        }
+        log(reports, null, start);
+      }
+      if (!cancelled)
+        insertTasksAfterCurrentTask(layouts);
+    } finally {
+      pool.shutdownNow();
+      streams.clear();
+      taskMonitor.setProgress(1.0);
+    }
+  }
+
+  @Override
+  public void cancel() {
+    super.cancel();
+    final BioPaxMapper m = mapper;
+    if (m != null)
+      m.cancel();
+  }
+
+  private Model read(Report report) throws IOException {
+    final long t = System.currentTimeMillis();
+    final ProgressInputStream pis = new ProgressInputStream(new FileInputStream(report.file),
+      report.file.length(), null, 0, 0, () -> cancelled);
+    streams.add(pis);
+    InputStream is = new BufferedInputStream(pis);
+    try {
+      if (report.file.getName().endsWith(".gz"))
+        is = new GZIPInputStream(is);
+      final Model model = BioPaxMapper.read(is, stringPool);
+      report.readTime = System.currentTimeMillis() - t;
+      report.objects = (model != null) ? model.getObjects().size() : 0;
+      return model;
+    } finally {
+      is.close();
+    }
+  }
+
+  // maps the model, registers the network and view, and adds the view's layout tasks to 'layouts'
+  private CyNetwork mapAndRegister(Model model, String inputName, CyRootNetwork rootNetwork, Report report,
+                                   TaskIterator layouts) {
+    final long t = System.currentTimeMillis();
+    mapper = new BioPaxMapper(model, App.cyServices.networkFactory, stringPool);
+    String name = BioPaxMapper.getName(model);
+    if (name == null || name.trim().isEmpty())
+      name = inputName;
+    name = App.cyServices.naming.getSuggestedNetworkTitle(StringEscapeUtils.unescapeHtml4(name));
+
+    final CyNetwork network = mapper.createCyNetwork(name, rootNetwork);
+    mapper = null;
+    if (network == null) //cancelled
+      return null;
+    // set the biopax network mapping type for other plugins
+    Attributes.set(network, network, BioPaxMapper.BIOPAX_NETWORK,
+      BiopaxVisualStyleUtil.BIO_PAX_VISUAL_STYLE, String.class);
+    report.mapTime = System.currentTimeMillis() - t;
+    report.nodes = network.getNodeCount();
+    report.edges = network.getEdgeCount();
+
+    App.cyServices.networkManager.addNetwork(network);
+    final CyNetworkView view = App.cyServices.networkViewFactory.createNetworkView(network);
+    App.cyServices.networkViewManager.addNetworkView(view);
+    if (NetworkAndViewTask.applyStyle(view))
+      layouts.append(NetworkAndViewTask.createLayoutTasks(view));
+
+    return network;
+  }
+
+  private static void log(Report[] reports, Report merged, long start) {
+    final StringBuilder sb = new StringBuilder("BioPAX batch import (file: read ms, objects; map ms, nodes, edges;\n"
+      + "  merged: merge ms, objects; map ms, nodes, edges):");
+    for (Report r : reports)
+      sb.append("\n  ").append(r);
+    if (merged != null)
+      sb.append("\n  ").append(merged);
+    sb.append("\n  total: ").append(System.currentTimeMillis() - start).append(" ms");
+    LOGGER.info(sb.toString());
+  }
+
+  // per-file timing report
+  private static final class Report {
+    final File file;
+    volatile long readTime;
+    long mergeTime;
+    volatile int objects;
+    volatile String error;
+    long mapTime;
+    int nodes;
+    int edges;
+
+    Report(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public String toString() {
+      final String name = (file != null) ? file.getName() : "merged";
+      if (error != null)
+        return name + ": failed - " + error;
+      return name + ": " + ((file != null) ? readTime : mergeTime) + ", " + objects
+        + "; " + mapTime + ", " + nodes + ", " + edges;
+    }
+  }
+}
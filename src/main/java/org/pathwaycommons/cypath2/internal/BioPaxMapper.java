@@ -3,7 +3,6 @@ package org.pathwaycommons.cypath2.internal;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.biopax.paxtools.controller.*;
-import org.biopax.paxtools.converter.LevelUpgrader;
 import org.biopax.paxtools.io.SimpleIOHandler;
 import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.BioPAXLevel;
@@ -12,15 +11,18 @@ import org.biopax.paxtools.model.level3.*;
 import org.biopax.paxtools.model.level3.Process;
 import org.biopax.paxtools.pattern.miner.*;
 import org.biopax.paxtools.util.ClassFilterSet;
-import org.biopax.paxtools.util.Filter;
 import org.cytoscape.model.*;
 import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -72,16 +74,94 @@ public class BioPaxMapper {
   public static final String BIOPAX_RELATIONSHIP = "RELATIONSHIP";
   public static final String BIOPAX_PUBLICATION = "PUBLICATION";
   public static final String BIOPAX_IHOP_LINKS = "IHOP_LINKS";
+  // compact mode node attributes: names of the collapsed generic members / complex components
+  public static final String BIOPAX_MEMBERS = "MEMBERS";
+  public static final String BIOPAX_COMPONENTS = "COMPONENTS";
   public static final String PHOSPHORYLATION_SITE = "phosphorylation site";
   public static final String PROTEIN_PHOSPHORYLATED = "Protein-phosphorylated";
 
+  // post-parse processing stage names (any can be skipped using the cypath2.pipeline.skip property)
+  static final String STAGE_UPGRADE = "upgradeLevel2";
+  static final String STAGE_DISPLAY_NAME = "fixDisplayName";
+  static final String STAGE_ENTITY_DISPLAY_NAME = "fixEntityDisplayName";
+  static final String STAGE_MERGE_INTERACTIONS = "mergeEquivalentInteractions";
+  static final String STAGE_NORMALIZE_GENERICS = "normalizeGenerics";
+  static final String STAGE_ADD_ENTITY_REFERENCE = "addMissingEntityReference";
+  static final String STAGE_INTERN_STRINGS = "internStrings";
+
+  // min. number of entities to extract the node attributes in parallel
+  static final int PARALLEL_EXTRACT_THRESHOLD = 1000;
+
+  // whether to search for the SIF patterns (types) in parallel (Cytoscape property; default: true)
+  static final String PROP_PARALLEL_SIF = "cypath2.sif.parallel";
+
+  static boolean parallelSif() {
+    return Boolean.parseBoolean(App.getProperty(PROP_PARALLEL_SIF, "true"));
+  }
+
+  /**
+   * How many node attributes to create.
+   */
+  enum AttributeDetail {
+    /** URI, BIOPAX_TYPE, name, the primary ids and chemical modifications only */
+    KEY,
+    /** all but the (hidden) web link ones */
+    NO_LINKS,
+    /** all */
+    ALL
+  }
+
+  /**
+   * Gets the network being mapped progressively, after each batch of nodes and edges.
+   */
+  interface BatchListener {
+    /**
+     * Called (in the mapping thread) after a batch of nodes, edges
+     * and their attributes was added to the network. The listener may register the network;
+     * if the mapping is then cancelled, the mapper leaves the network to the listener to destroy.
+     *
+     * @param network network being mapped
+     * @param label   the batch (sub-pathway) name
+     */
+    void batchMapped(CyNetwork network, String label);
+  }
+
   private final Model model;
   private final CyNetworkFactory networkFactory;
+  private final StringPool stringPool;
 
-  // BioPAX ID (URI) to CyNode map
+  // dense (0..n-1) index of the BioPAX entities mapped to nodes (in the network being created),
+  // to resolve their nodes and (display) names through the arrays
   // remark: nodes's CyTable will also have 'URI' (RDF Id) column
-  private final Map<BioPAXElement, CyNode>
-    bpeToCyNodeMap = new HashMap<BioPAXElement, CyNode>();
+  private final Map<BioPAXElement, Integer> nodeIndex = new IdentityHashMap<BioPAXElement, Integer>();
+  private CyNode[] nodes;
+  private String[] names; //getName (unescaped) cache
+  private boolean[] reused; //the node existed in the root network (merge by URI mode)
+
+  // set from another (e.g., UI) thread; checked by the mapping loops for every element
+  private volatile boolean cancelled;
+
+  // xref attributes by entity reference, shared by the simple physical entities that refer to it
+  private final Map<EntityReference, XrefSummary> xrefSummaries =
+    new ConcurrentHashMap<EntityReference, XrefSummary>();
+
+  // whether to buffer the node/edge attributes and write them column by column (see ColumnWriter)
+  private boolean bulkAttributes = true;
+  // whether to reuse the root network's nodes/edges having the same URI/type (when there's a root network)
+  private boolean mergeByUri;
+  // whether to create only the key node attributes (the rest - on demand, see ModelRegistry)
+  private boolean lazyAttributes;
+  // whether to collapse generics and complexes into node attributes and map only the interactions
+  // of the seed entities (when there are seeds)
+  private boolean compact;
+  // URIs or xref ids of the queried entities (compact mode)
+  private Set<String> seeds = Collections.emptySet();
+  // gets the network after each batch of nodes/edges, when mapping progressively (null - all at once)
+  private BatchListener batchListener;
+  // whether the network (being mapped) was passed to the batch listener
+  private boolean batchPassed;
+  // the attributes writer of the network being created (null - write each value right away)
+  private ColumnWriter columnWriter;
 
 
   /**
@@ -92,8 +172,100 @@ public class BioPaxMapper {
    * @param cyNetworkFactory Cytoscape network factory
    */
   public BioPaxMapper(Model model, CyNetworkFactory cyNetworkFactory) {
+    this(model, cyNetworkFactory, new StringPool());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param model            BioPAX Model
+   * @param cyNetworkFactory Cytoscape network factory
+   * @param stringPool       string pool (e.g., the one used when the model was read)
+   *                         to de-duplicate the attribute values
+   */
+  public BioPaxMapper(Model model, CyNetworkFactory cyNetworkFactory, StringPool stringPool) {
     this.model = model;
     this.networkFactory = cyNetworkFactory;
+    this.stringPool = stringPool;
+  }
+
+  /**
+   * Stops the network mapping (running in another thread)
+   * after the current BioPAX element is done.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Whether to write the node and edge attributes in bulk, column by column,
+   * after all the nodes and edges are created (default), or cell by cell while mapping.
+   *
+   * @param bulkAttributes true/false
+   */
+  void setBulkAttributes(boolean bulkAttributes) {
+    this.bulkAttributes = bulkAttributes;
+  }
+
+  /**
+   * Whether to create only the key node attributes - URI, BIOPAX_TYPE, name,
+   * the primary ids (UNIPROT, NCBI GENE, GENE SYMBOL) and chemical modifications -
+   * and not the property path, xref list and link ones (see {@link ModelRegistry}
+   * to create those later, on demand).
+   *
+   * @param lazyAttributes true/false (default)
+   */
+  void setLazyAttributes(boolean lazyAttributes) {
+    this.lazyAttributes = lazyAttributes;
+  }
+
+  /**
+   * Whether to map the model to a compact hypergraph: no nodes and 'member'/'contains' edges
+   * for the generic members and complex components (which become the MEMBERS/COMPONENTS list
+   * attributes of their parents' nodes), no hidden web link attributes, and only the interactions
+   * (and their controls) that involve the seed entities (see {@link #setSeeds(Collection)}).
+   *
+   * @param compact true/false (default)
+   */
+  void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   * Sets the queried entities for the compact mode, to map only the interactions that involve them.
+   *
+   * @param seeds URIs (of physical entities or entity references) or xref ids (e.g., gene symbols);
+   *              null or empty - all the interactions
+   */
+  void setSeeds(Collection<String> seeds) {
+    this.seeds = (seeds == null) ? Collections.<String>emptySet() : new HashSet<String>(seeds);
+  }
+
+  /**
+   * Makes {@link #createCyNetwork(String, CyRootNetwork)} map the model progressively,
+   * sub-pathway by sub-pathway, and pass the network to the listener after each batch
+   * (not in the compact and merge by URI modes).
+   *
+   * @param batchListener listener or null (map all at once; default)
+   */
+  void setBatchListener(BatchListener batchListener) {
+    this.batchListener = batchListener;
+  }
+
+  /**
+   * Whether, when creating a new sub-network of an existing root network,
+   * to reuse (add to the new network) the root network's nodes that have the same URI,
+   * with all their attributes, and the edges between those that have the same interaction type,
+   * and only map the BioPAX elements that are new.
+   *
+   * @param mergeByUri true/false (default)
+   */
+  void setMergeByUri(boolean mergeByUri) {
+    this.mergeByUri = mergeByUri;
   }
 
   /*
@@ -145,7 +317,10 @@ public class BioPaxMapper {
     return new NodeAttributesWrapper(chemicalModificationsSet);
   }
 
-  private static void createExtraXrefAttributes(BioPAXElement resource, CyNetwork network, CyNode node) {
+  private static void createExtraXrefAttributes(BioPAXElement resource, NodeAttributes.Builder attributes,
+                                                StringPool stringPool,
+                                                Map<EntityReference, XrefSummary> xrefSummaries,
+                                                AttributeDetail detail) {
 
     // try getting the primary UniProt ID from the URI
     // to create UNIPROT attribute
@@ -160,229 +335,136 @@ public class BioPaxMapper {
       if (u.startsWith("http://identifiers.org/uniprot")) {
         // /uniprot.isoform/ works here as well
         String id = u.substring(u.lastIndexOf('/') + 1);
-        Attributes.set(network, node, "UNIPROT", id, String.class);
+        attributes.set("UNIPROT", id);
       }
     }
 
+    final XrefSummary xrefs = xrefSummary(resource, stringPool, xrefSummaries);
+
     //add special simple (String) uniprot, ncbi gene, gene symbol attributes
-    // (do not create those for generic ER/PE, - impossible to define a "primary" ID)
-    for (Xref link : getXRefs(resource, Xref.class, false)) {
-      if (link.getDb() == null || link.getDb().isEmpty()
-        || link.getId() == null || link.getId().isEmpty())
-        continue; // too bad (data issue...); skip it
-      // try to detect and add several important ID attributes first
-      // (it works better, if at all, when the biopax model was normalized)
-      //chances are, if data were normalized, we get some more primary accession IDs:
-      createSpecialXrefAttribute(resource, network, node, link);
-    }
+    attributes.set("GENE SYMBOL", xrefs.geneSymbol);
+    attributes.set("NCBI GENE", xrefs.ncbiGene);
+    if (attributes.get("UNIPROT") == null) //won't replace if found
+      attributes.set("UNIPROT", xrefs.uniprot);
 
-    // ihop links
-    String stringRef = ihopLinks(resource);
-    if (stringRef != null) {
-      Attributes.set(network, node, CyNetwork.HIDDEN_ATTRS, BIOPAX_IHOP_LINKS, stringRef, String.class);
-    }
-
-    //these collections, one per xref class, are to store standard IDs only (no db name)
-    List<String> uniXrefList = new ArrayList<String>();
-    List<String> relXrefList = new ArrayList<String>();
-    List<String> pubXrefList = new ArrayList<String>();
-    //next are for (hidden) list attributes that contain more info about the xref
-    List<String> uniLinkList = new ArrayList<String>();
-    List<String> relLinkList = new ArrayList<String>();
-    List<String> pubLinkList = new ArrayList<String>();
-
-    // create several ID-list attributes from xrefs
-    // (including from members of/if it's a generic ER/PE)
-    for (Xref link : getXRefs(resource, Xref.class, true)) {
-      if (link.getDb() == null || link.getDb().isEmpty()
-        || link.getId() == null || link.getId().isEmpty())
-        continue; // too bad (data issue...); skip it
-
-      // then, for any xref, collect IDs
-      StringBuffer temp = new StringBuffer();
-      temp.append(ExternalLinkUtil.createLink(link.getDb(), link.getId()));
-
-      String str;
-
-      if (link instanceof UnificationXref) {
-        str = temp.toString();
-        if (!uniLinkList.contains(str))
-          uniLinkList.add(str);
-
-        str = link.toString();
-        if (!uniXrefList.contains(str))
-          uniXrefList.add(str);
-      } else if (link instanceof PublicationXref) {
-
-        PublicationXref xl = (PublicationXref) link;
-        temp.append(" ");
-        if (!xl.getAuthor().isEmpty()) {
-          temp.append(xl.getAuthor().toString() + " et al., ");
-        }
-        if (xl.getTitle() != null) {
-          temp.append(xl.getTitle());
-        }
-        if (!xl.getSource().isEmpty()) {
-          temp.append(" (" + xl.getSource().toString());
-          if (xl.getYear() > 0) {
-            temp.append(", " + xl.getYear());
-          }
-          temp.append(")");
-        }
+    if (detail == AttributeDetail.KEY)
+      return;
 
-        str = temp.toString();
-        if (!pubLinkList.contains(str))
-          pubLinkList.add(str);
-
-        str = link.toString();
-        if (!pubXrefList.contains(str))
-          pubXrefList.add(str);
-      } else if (link instanceof RelationshipXref) {
-        str = temp.toString();
-        if (!relLinkList.contains(str))
-          relLinkList.add(str);
-
-        str = link.toString();
-        if (!relXrefList.contains(str))
-          relXrefList.add(str);
+    // ihop links
+    if (detail == AttributeDetail.ALL) {
+      String stringRef = intern(stringPool, ihopLinks(resource));
+      if (stringRef != null) {
+        attributes.setHidden(BIOPAX_IHOP_LINKS, stringRef);
       }
     }
 
-    Attributes.set(network, node, BIOPAX_UNIFICATION, uniXrefList, String.class);
-    Attributes.set(network, node, BIOPAX_RELATIONSHIP, relXrefList, String.class);
-    Attributes.set(network, node, BIOPAX_PUBLICATION, pubXrefList, String.class);
-    Attributes.set(network, node, CyNetwork.HIDDEN_ATTRS, BIOPAX_UNIFICATION_REFERENCES, uniLinkList, String.class);
-    Attributes.set(network, node, CyNetwork.HIDDEN_ATTRS, BIOPAX_RELATIONSHIP_REFERENCES, relLinkList, String.class);
-    Attributes.set(network, node, CyNetwork.HIDDEN_ATTRS, BIOPAX_PUBLICATION_REFERENCES, pubLinkList, String.class);
+    // ID-list attributes from xrefs (including from members of/if it's a generic ER/PE);
+    // the lists are copied, for the summary can be shared by other nodes
+    attributes.set(BIOPAX_UNIFICATION, new ArrayList<String>(xrefs.unificationIds));
+    attributes.set(BIOPAX_RELATIONSHIP, new ArrayList<String>(xrefs.relationshipIds));
+    attributes.set(BIOPAX_PUBLICATION, new ArrayList<String>(xrefs.publicationIds));
+    if (detail == AttributeDetail.ALL) {
+      attributes.setHidden(BIOPAX_UNIFICATION_REFERENCES, new ArrayList<String>(xrefs.unificationLinks));
+      attributes.setHidden(BIOPAX_RELATIONSHIP_REFERENCES, new ArrayList<String>(xrefs.relationshipLinks));
+      attributes.setHidden(BIOPAX_PUBLICATION_REFERENCES, new ArrayList<String>(xrefs.publicationLinks));
+    }
   }
 
   /*
-   * Create special individual String (not List) attributes from specific xref IDs,
-   * HGNC Symbol and NCBI Gene; for others, though, including UniProt, unfortunately,
-   * it's usually hard to find the "primary" ID among others,
-   * without using external databases (it works better, if at all,
-   * when the biopax model was normalized). But let's at least have one
-   * UniProt ID (by chance, if ther're many, unless it's already added).
+   * Gets the xref summary of the element. A simple physical entity that has no xrefs of its own
+   * gets exactly the same as its entity reference, so that one is computed once per entity reference
+   * (and cached in the map, if not null) and shared by all such entities.
    */
-  private static void createSpecialXrefAttribute(BioPAXElement resource, CyNetwork network, CyNode node, Xref link) {
-    final String db = link.getDb().toUpperCase().trim();
-    final String id = link.getId().trim();
-    if (db.equalsIgnoreCase("HGNC SYMBOL") //- official primary db name
-      || db.startsWith("HGNC") || db.startsWith("HUGO GENE")
-      || db.startsWith("GENE SYMBOL") || db.startsWith("GENE NAME")) {
-      String exists = network.getRow(node).get("GENE SYMBOL", String.class);
-      //won't replace any existing value (added first)
-      if (exists == null && !id.startsWith("HGNC:")) //ignore HGNC:12345 IDs
-        Attributes.set(network, node, "GENE SYMBOL", id, String.class);
-
-    } else if (db.equalsIgnoreCase("NCBI GENE") //main (official) db name
-      || db.equalsIgnoreCase("ENTREZ GENE") || db.equalsIgnoreCase("GENE ID")) {
-      String exists = network.getRow(node).get("NCBI GENE", String.class);
-      //won't replace any existing value (added first)
-      if (exists == null)
-        Attributes.set(network, node, "NCBI GENE", id, String.class);
-
-    } else if (db.startsWith("UNIPROT")
-      || db.startsWith("SWISSPROT") || db.startsWith("SWISS-PROT")) {
-      String exists = network.getRow(node).get("UNIPROT", String.class);
-      //won't replace if found
-      if (exists == null)
-        Attributes.set(network, node, "UNIPROT", id, String.class);
-
+  private static XrefSummary xrefSummary(BioPAXElement bpe, final StringPool stringPool,
+                                         Map<EntityReference, XrefSummary> xrefSummaries) {
+    EntityReference er = null;
+    if (bpe instanceof EntityReference) {
+      er = (EntityReference) bpe;
+    } else if (bpe instanceof SimplePhysicalEntity && ((SimplePhysicalEntity) bpe).getXref().isEmpty()) {
+      er = ((SimplePhysicalEntity) bpe).getEntityReference();
     }
+
+    if (er == null || xrefSummaries == null)
+      return new XrefSummary(getXRefs(bpe, Xref.class, false), getXRefs(bpe, Xref.class, true), stringPool);
+
+    return xrefSummaries.computeIfAbsent(er, ref ->
+      new XrefSummary(getXRefs(ref, Xref.class, false), getXRefs(ref, Xref.class, true), stringPool));
+  }
+
+  // the pooled copy of the string (or the string itself if there's no pool)
+  private static String intern(StringPool stringPool, String s) {
+    return (stringPool != null) ? stringPool.intern(s) : s;
   }
 
   public static void createAttributesFromProperties(final BioPAXElement element, final Model model,
                                                     final CyNode node, final CyNetwork network) {
-    @SuppressWarnings("rawtypes")
-    Filter<PropertyEditor> filter = new Filter<PropertyEditor>() {
-      @Override
-      // skips for entity-range properties (which map to edges rather than attributes!),
-      // and several utility classes ranges (for which we do not want generate attributes or do another way)
-      public boolean filter(PropertyEditor editor) {
-        boolean pass = true;
-
-        final String prop = editor.getProperty();
-        if (editor instanceof ObjectPropertyEditor) {
-          Class<?> c = editor.getRange();
-          if (Entity.class.isAssignableFrom(c)
-            || Stoichiometry.class.isAssignableFrom(c)
-            || "nextStep".equals(prop)
-            ) {
-            pass = false;
-            ;
-          }
-        } else if ("name".equals(prop))
-          pass = false;
-
-        return pass;
-      }
-    };
-
-    @SuppressWarnings("unchecked")
-    AbstractTraverser bpeAutoMapper = new AbstractTraverser(SimpleEditorMap.L3, filter) {
-      final Stack<String> propPath = new Stack<String>();
+    createAttributesFromProperties(element, model, node, network, null);
+  }
 
-      @SuppressWarnings("rawtypes")
-      @Override
-      protected void visit(Object obj, BioPAXElement bpe, Model model,
-                           PropertyEditor editor) {
-        if (obj != null && !editor.isUnknown(obj)) {
-          propPath.push(editor.getProperty());
-          final String attrName = StringUtils.join(propPath, "/");
-          String value = obj.toString();
-          if (!"".equalsIgnoreCase(value.toString().replaceAll("\\]|\\[", ""))) {
-            if (editor.isMultipleCardinality()) {
-              CyRow row = network.getRow(node);
-              List<String> vals = new ArrayList<String>();
-              // consider existing attribute values
-              if (row.isSet(attrName)) {
-                Class<?> listElementType = row.getTable().getColumn(attrName).getListElementType();
-                List prevList = row.getList(attrName, listElementType);
-                if (!prevList.contains(value)) prevList.add(value);
-              } else { //create
-                vals.add(value);
-                Attributes.set(network, node, attrName, vals, String.class);
-              }
-            } else {
-              Attributes.set(network, node, attrName, value, String.class);
-            }
-          }
+  /**
+   * Creates the node attributes from the BioPAX element properties
+   * (the composed string values are de-duplicated using the pool).
+   *
+   * @param element    BioPAX element
+   * @param model      BioPAX model
+   * @param node       node
+   * @param network    network
+   * @param stringPool string pool (can be null)
+   */
+  public static void createAttributesFromProperties(final BioPAXElement element, final Model model,
+                                                    final CyNode node, final CyNetwork network,
+                                                    final StringPool stringPool) {
+    extractAttributes(element, stringPool).writeTo(network, node);
+  }
 
-          // currently, we don't map absolutely all BioPAX relationships to edges/attributes:
-          // traverse deeper only if it's an object range property
-          // or single cardinality (- otherwise would
-          // result with having too many/branchy Cy attributes)
-          if (editor instanceof ObjectPropertyEditor
-            && !editor.isMultipleCardinality())
-          // this effectively prevents going into details for
-          // such objects as values of 'xref', 'memberEntityReference',
-          // 'componentStoichiometry', etc. props.
-          {
-            traverse((BioPAXElement) obj, null);
-          }
+  /**
+   * Gets the node attribute values from the BioPAX element properties
+   * (does not change the network).
+   *
+   * @param element    BioPAX element
+   * @param stringPool string pool (can be null)
+   * @return attribute values
+   */
+  static NodeAttributes extractAttributes(final BioPAXElement element, final StringPool stringPool) {
+    return extractAttributes(element, stringPool, null, AttributeDetail.ALL);
+  }
 
-          propPath.pop();
-        }
-      }
-    };
+  /**
+   * Gets the node attribute values from the BioPAX element properties
+   * (does not change the network).
+   *
+   * @param element        BioPAX element
+   * @param stringPool     string pool (can be null)
+   * @param xrefSummaries  concurrent map to cache/share the entity references' xref summaries (can be null)
+   * @param detail         what attributes to get
+   * @return attribute values
+   */
+  static NodeAttributes extractAttributes(final BioPAXElement element, final StringPool stringPool,
+                                          final Map<EntityReference, XrefSummary> xrefSummaries,
+                                          final AttributeDetail detail) {
+    final NodeAttributes.Builder attributes = NodeAttributes.builder();
 
     // set the most important attributes
-    Attributes.set(network, node, BIOPAX_URI, element.getUri(), String.class);
-    Attributes.set(network, node, BIOPAX_ENTITY_TYPE, element.getModelInterface().getSimpleName(), String.class);
-
-    // traverse to create the rest of attr.
-    bpeAutoMapper.traverse(element, model);
+    attributes.set(BIOPAX_URI, element.getUri());
+    attributes.set(BIOPAX_ENTITY_TYPE, element.getModelInterface().getSimpleName());
+
+    // create the rest of attr. from the BioPAX properties (using the type's compiled plan)
+    if (detail != AttributeDetail.KEY) {
+      final Map<String, Object> columns = new LinkedHashMap<String, Object>();
+      AttributePlan.of(element).extract(element, columns, stringPool);
+      for (Map.Entry<String, Object> column : columns.entrySet())
+        attributes.set(column.getKey(), column.getValue());
+    }
 
     // create custom (convenience?) attributes, mainly - from xrefs
-    createExtraXrefAttributes(element, network, node);
+    createExtraXrefAttributes(element, attributes, stringPool, xrefSummaries, detail);
 
     String name = getName(element);
     if (!(element instanceof Interaction)) {
       if (element instanceof EntityReference //this is for SIF views
         || element instanceof PhysicalEntity
         || element instanceof Gene) {
-        String gs = network.getRow(node, CyNetwork.DEFAULT_ATTRS).get("GENE SYMBOL", String.class);
+        String gs = (String) attributes.get("GENE SYMBOL");
         if (gs != null) {
           name = gs; //replace other name(s) with the gene symbol(s)
         }
@@ -397,9 +479,9 @@ public class BioPaxMapper {
         List<String> list = chemicalModificationsWrapper.asList();
         if (list != null && !list.isEmpty()) {
           // store chemical modifications to be used by the view details panel, node attribute browser, Quick Find
-          Attributes.set(network, node, BIOPAX_CHEMICAL_MODIFICATIONS_LIST, list, String.class);
+          attributes.set(BIOPAX_CHEMICAL_MODIFICATIONS_LIST, list);
           if (list.contains(PHOSPHORYLATION_SITE)) {
-            Attributes.set(network, node, BIOPAX_ENTITY_TYPE, PROTEIN_PHOSPHORYLATED, String.class);
+            attributes.set(BIOPAX_ENTITY_TYPE, PROTEIN_PHOSPHORYLATED);
             name += " +phos";
           }
         }
@@ -417,7 +499,9 @@ public class BioPaxMapper {
     }
 
     // update the name (also used for node's label and quick find)
-    Attributes.set(network, node, CyNetwork.NAME, name, String.class);
+    attributes.set(CyNetwork.NAME, intern(stringPool, name));
+
+    return attributes.build();
   }
 
   public static <T extends Xref> List<ExternalLink> xrefToExternalLinks(BioPAXElement bpe, Class<T> xrefClass) {
@@ -500,16 +584,105 @@ public class BioPaxMapper {
    * @throws FileNotFoundException
    */
   public static Model read(final InputStream in) throws FileNotFoundException {
-    Model model = convertFromOwl(in);
-    // immediately convert to BioPAX Level3 model
-    if (model != null && BioPAXLevel.L2.equals(model.getLevel())) {
-      model = new LevelUpgrader().filter(model);
+    return read(in, new StringPool());
+  }
+
+  /**
+   * Import BioPAX data into a new in-memory model
+   * (the string values get de-duplicated using the pool).
+   *
+   * @param in         BioPAX data
+   * @param stringPool string pool (can be reused by the network mapper)
+   * @return new BioPAX model or null
+   * @throws FileNotFoundException
+   */
+  public static Model read(final InputStream in, final StringPool stringPool) throws FileNotFoundException {
+    return prepare(convertFromOwl(in), stringPool);
+  }
+
+  /**
+   * Loads the BioPAX model from the binary snapshot, if possible,
+   * or else - parses the (gzipped) BioPAX RDF/XML file.
+   *
+   * @param snapshot binary model snapshot file (can be null)
+   * @param owl      BioPAX file (can be gzipped)
+   * @return BioPAX model or null
+   * @throws IOException when the BioPAX file cannot be read
+   */
+  public static Model read(final File snapshot, final File owl) throws IOException {
+    if (snapshot != null) {
+      try {
+        return ModelSnapshot.read(snapshot);
+      } catch (IOException e) {
+        log.warn("Cannot load the snapshot " + snapshot + "; will parse " + owl + " instead", e);
+      }
     }
+    InputStream is = new BufferedInputStream(new FileInputStream(owl));
+    try {
+      if (owl.getName().endsWith(".gz"))
+        is = new GZIPInputStream(is);
+      return read(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * Upgrades (if it's BioPAX Level2) and fixes display names
+   * of a model that was already parsed elsewhere, e.g., by the cPath2 client
+   * straight from the HTTP response stream.
+   *
+   * @param model BioPAX model (can be null)
+   * @return BioPAX Level3 model or null
+   */
+  public static Model prepare(Model model) {
+    return prepare(model, new StringPool());
+  }
 
-    if (model != null)
-      fixDisplayName(model);
+  /**
+   * Upgrades (if it's BioPAX Level2), fixes display names
+   * and de-duplicates the string values of the model.
+   *
+   * @param model      BioPAX model (can be null)
+   * @param stringPool string pool (can be null - no de-duplication)
+   * @return BioPAX Level3 model or null
+   */
+  public static Model prepare(Model model, StringPool stringPool) {
+    return (model != null) ? readPipeline(stringPool).run(model) : null;
+  }
+
+  /*
+   * Post-parse processing: immediately convert to BioPAX Level3 model; then fix display names;
+   * then replace duplicate strings (db names, CV terms, etc.) with the pooled ones.
+   */
+  static ModelPipeline readPipeline(final StringPool stringPool) {
+    final ModelPipeline pipeline = new ModelPipeline("read")
+      .add(STAGE_UPGRADE, m -> (BioPAXLevel.L2.equals(m.getLevel())) ? new ChunkedLevelUpgrader().filter(m) : m)
+      .add(STAGE_DISPLAY_NAME, Named.class, true, (e, m) -> fixDisplayName(e))
+      .add(STAGE_ENTITY_DISPLAY_NAME, SimplePhysicalEntity.class, true, (spe, m) -> fixDisplayNameFromReference(spe));
+    if (stringPool != null)
+      pipeline.add(STAGE_INTERN_STRINGS, BioPAXElement.class, true, (e, m) -> stringPool.intern(e));
+    return pipeline;
+  }
 
-    return model;
+  /*
+   * Extra normalization to get better BioPAX to SIF conversion results
+   * (the entity reference repair and display name fix are fused into one sweep).
+   */
+  static ModelPipeline sifPipeline() {
+    return new ModelPipeline("sif")
+      //merge interactions with exactly same properties...
+      .add(STAGE_MERGE_INTERACTIONS, m -> {
+        ModelUtils.mergeEquivalentInteractions(m);
+        return m;
+      })
+      .add(STAGE_NORMALIZE_GENERICS, m -> {
+        ModelUtils.normalizeGenerics(m); //TODO not sure want to apply this...
+        return m;
+      })
+      .add(STAGE_ADD_ENTITY_REFERENCE, SimplePhysicalEntity.class, false,
+        (spe, m) -> ModelUtils.addMissingEntityReference(m, spe))
+      .add(STAGE_ENTITY_DISPLAY_NAME, SimplePhysicalEntity.class, true, (spe, m) -> fixDisplayNameFromReference(spe));
   }
 
   private static Model convertFromOwl(final InputStream stream) {
@@ -556,24 +729,10 @@ public class BioPaxMapper {
    */
   public static Object getValue(BioPAXElement bpe, String... properties) {
     for (String property : properties) {
-      try {
-        Method method = bpe.getModelInterface().getMethod(
-          "get" + property.substring(0, 1).toUpperCase()
-            + property.substring(1).replace('-', '_'));
-        Object invoke = method.invoke(bpe);
-        if (invoke != null) {
-          return invoke;
-        }
-//				PropertyEditor editor = SimpleEditorMap.L3
-//					.getEditorForProperty(property, bpe.getModelInterface());
-//				return editor.getValueFromBean(bpe); // is always a Set!
-      } catch (Exception e) {
-        if (log.isDebugEnabled()) {
-          // this is often OK, as we guess L2 or L3 properties...
-          log.debug("Ignore property " + property + " for "
-            + bpe.getUri() + ": " + e);
-        }
-      }
+      // (we often guess L2 or L3 properties; the accessors know which ones the type has)
+      Object value = PropertyAccessors.get(bpe, property);
+      if (value != null)
+        return value;
     }
     return null;
   }
@@ -589,24 +748,13 @@ public class BioPaxMapper {
     Collection<Object> col = new HashSet<Object>();
 
     for (String property : properties) {
-      try {
-        Method method = bpe.getModelInterface().getMethod(
-          "get" + property.substring(0, 1).toUpperCase()
-            + property.substring(1).replace('-', '_'));
-
-        Object invoke = method.invoke(bpe);
-        if (invoke != null) {
-          // return value can be collection or Object
-          if (invoke instanceof Collection) {
-            col.addAll((Collection) invoke);
-          } else {
-            col.add(invoke);
-          }
-        }
-      } catch (Exception e) {
-        if (log.isDebugEnabled()) {
-          log.debug("Cannot get value of '" + property + "' for "
-            + bpe.getUri() + ": " + e);
+      Object value = PropertyAccessors.get(bpe, property);
+      if (value != null) {
+        // return value can be collection or Object
+        if (value instanceof Collection) {
+          col.addAll((Collection<?>) value);
+        } else {
+          col.add(value);
         }
       }
     }
@@ -757,39 +905,142 @@ public class BioPaxMapper {
    */
   public static void fixDisplayName(Model model) {
     log.info("Trying to auto-set displayName for all BioPAX elements");
-    // where it's null, set to the shortest name if possible
-    for (Named e : model.getObjects(Named.class)) {
-      if (e.getDisplayName() == null) {
-        if (e.getStandardName() != null) {
-          e.setDisplayName(e.getStandardName());
-        } else if (!e.getName().isEmpty()) {
-          String dsp = e.getName().iterator().next();
-          for (String name : e.getName()) {
-            if (name.length() < dsp.length())
-              dsp = name;
-          }
-          e.setDisplayName(dsp);
+    new ModelPipeline("fixDisplayName")
+      .add(STAGE_DISPLAY_NAME, Named.class, true, (e, m) -> fixDisplayName(e))
+      .add(STAGE_ENTITY_DISPLAY_NAME, SimplePhysicalEntity.class, true, (spe, m) -> fixDisplayNameFromReference(spe))
+      .run(model);
+  }
+
+  // where it's null, set to the shortest name if possible
+  private static void fixDisplayName(Named e) {
+    if (e.getDisplayName() == null) {
+      if (e.getStandardName() != null) {
+        e.setDisplayName(e.getStandardName());
+      } else if (!e.getName().isEmpty()) {
+        String dsp = e.getName().iterator().next();
+        for (String name : e.getName()) {
+          if (name.length() < dsp.length())
+            dsp = name;
         }
+        e.setDisplayName(dsp);
       }
     }
-    // if required, set PE name to (already fixed) ER's name...
-    for (EntityReference er : model.getObjects(EntityReference.class)) {
-      for (SimplePhysicalEntity spe : er.getEntityReferenceOf()) {
-        if (spe.getDisplayName() == null || spe.getDisplayName().trim().length() == 0) {
-          if (er.getDisplayName() != null && er.getDisplayName().trim().length() > 0) {
-            spe.setDisplayName(er.getDisplayName());
-          }
-        }
+  }
+
+  // if required, set PE name to (already fixed) ER's name...
+  private static void fixDisplayNameFromReference(SimplePhysicalEntity spe) {
+    EntityReference er = spe.getEntityReference();
+    if (er != null && (spe.getDisplayName() == null || spe.getDisplayName().trim().length() == 0)) {
+      if (er.getDisplayName() != null && er.getDisplayName().trim().length() > 0) {
+        spe.setDisplayName(er.getDisplayName());
       }
     }
   }
 
+  /**
+   * Normalizes the BioPAX model for the SIF conversion and
+   * searches for the binary interactions (see {@link CustomSifParser#add(SIFInteraction)}
+   * to map them to a network).
+   *
+   * @param m        biopax model
+   * @param sifTypes SIF rules/patterns to use
+   * @return binary interactions
+   */
+  public static Set<SIFInteraction> toSifInteractions(Model m, SIFType[] sifTypes) {
+    return toSifInteractions(m, sifTypes, parallelSif());
+  }
+
+  /**
+   * Normalizes the BioPAX model (in place) for the SIF conversion and
+   * searches for the binary interactions (see {@link #searchSif(Model, SIFType[], boolean)}).
+   *
+   * @param m        biopax model
+   * @param sifTypes SIF rules/patterns to use
+   * @param parallel whether to search for the SIF types in parallel
+   * @return binary interactions
+   */
+  static Set<SIFInteraction> toSifInteractions(final Model m, SIFType[] sifTypes, boolean parallel) {
+    sifPipeline().run(m);
+    return searchSif(m, sifTypes, parallel);
+  }
+
+  /**
+   * Gets the model normalized for the SIF conversion: the one cached
+   * for the same data before (a new model), or this model normalized in place
+   * (then it's also cached, in background, when there is a key; so, do not modify it).
+   *
+   * @param m   biopax model
+   * @param key what identifies the data, e.g., the normalized query; or null - do not cache
+   * @return normalized model
+   */
+  static Model normalizeForSif(Model m, String key) {
+    final NormalizedModelCache cache = App.normalizedModelCache;
+    if (cache == null || key == null) {
+      sifPipeline().run(m);
+      return m;
+    }
+
+    final Model cached = cache.get(key);
+    if (cached != null) {
+      log.info("Got the normalized model from the cache (" + key + ")");
+      return cached;
+    }
+    sifPipeline().run(m);
+    App.cachedThreadPool.execute(() -> cache.put(key, m));
+    return m;
+  }
+
+  /**
+   * Searches for the binary interactions in the model normalized for the SIF conversion,
+   * one SIF type at a time or all at once in parallel (fork/join common pool),
+   * and logs how long each type took.
+   *
+   * @param m        normalized biopax model (see {@link #normalizeForSif(Model, String)})
+   * @param sifTypes SIF rules/patterns to use
+   * @param parallel whether to search for the SIF types in parallel
+   * @return binary interactions
+   */
+  static Set<SIFInteraction> searchSif(final Model m, SIFType[] sifTypes, boolean parallel) {
+    //convert to binary interactions, with a searcher per SIF type (the searches only read the model;
+    //the interactions of different types are never equal, so the results just add up)
+    final long start = System.currentTimeMillis();
+    final Map<SIFType, String> timings = new ConcurrentHashMap<SIFType, String>();
+    final Stream<SIFType> types = (parallel) ? Arrays.stream(sifTypes).parallel() : Arrays.stream(sifTypes);
+    final List<Set<SIFInteraction>> results = types.map(sifType -> {
+      final long t = System.currentTimeMillis();
+      SIFSearcher sifSearcher = new SIFSearcher(new SimpleIDFetcher(), sifType);
+      //use the PC2 blacklist of ubiquitous small molecules
+      sifSearcher.setBlacklist(App.blacklist);
+      final Set<SIFInteraction> found = sifSearcher.searchSIF(m);
+      timings.put(sifType, (System.currentTimeMillis() - t) + " ms (" + found.size() + ")");
+      return found;
+    }).collect(Collectors.toList());
+
+    final Set<SIFInteraction> binaryInts = new HashSet<SIFInteraction>();
+    for (Set<SIFInteraction> found : results)
+      binaryInts.addAll(found);
+
+    if (log.isInfoEnabled()) {
+      final StringBuilder sb = new StringBuilder("SIF search (" + ((parallel) ? "parallel" : "sequential")
+        + "): " + binaryInts.size() + " interactions in " + (System.currentTimeMillis() - start) + " ms; by type -");
+      for (SIFType sifType : sifTypes)
+        sb.append(' ').append(sifType.getTag()).append(": ").append(timings.get(sifType)).append(';');
+      log.info(sb.toString());
+    }
+
+    return binaryInts;
+  }
+
   /**
    * Converts a BioPAX Model to the
    * custom Simple Interactions Format (SIF), where each row
    * describes an inferred bio interaction using tab-separated columns:
    * URI1, interaction_type, URI2, data_sources, PMIDs, pathway_names
    * (the last three columns may contain semicolon-separated multiple values).
+   * <p>
+   * The app itself does not use it: the Binary import adds the interactions to the network
+   * directly (see {@link CustomSifParser#add(SIFInteraction)}), and there is no SIF export action;
+   * it is here for the benchmarks (SIF text vs. objects) and scripts.
    *
    * @param m               biopax model
    * @param sifTypes        SIF rules/patterns to use
@@ -800,19 +1051,7 @@ public class BioPaxMapper {
     Model m,
     SIFType[] sifTypes, //SIF rules/patterns to apply/search
     OutputStream sifOutputStream) throws IOException {
-    //merge interactions with exactly same properties...
-    ModelUtils.mergeEquivalentInteractions(m);
-    //some extra normalization to get better conversion results
-    ModelUtils.normalizeGenerics(m); //TODO not sure want to apply this...
-    for (SimplePhysicalEntity spe : new HashSet<SimplePhysicalEntity>(m.getObjects(SimplePhysicalEntity.class))) {
-      ModelUtils.addMissingEntityReference(m, spe);
-    }
-
-    //convert to binary interactions
-    SIFSearcher sifSearcher = new SIFSearcher(new SimpleIDFetcher(), sifTypes);
-    //use the PC2 blacklist of ubiquitous small molecules
-    sifSearcher.setBlacklist(App.blacklist);
-    Set<SIFInteraction> binaryInts = sifSearcher.searchSIF(m);
+    Set<SIFInteraction> binaryInts = toSifInteractions(m, sifTypes);
     // write interactions and some of their attributes (publications, datasources, pathways)
     SIFToText stt = new CustomFormat(
       OutputColumn.Type.RESOURCE.name(),
@@ -831,22 +1070,66 @@ public class BioPaxMapper {
     }
   }
 
+  /**
+   * Creates a new network (not registered) from the BioPAX model.
+   *
+   * @param networkName network name
+   * @param rootNetwork parent (root) network or null (new collection)
+   * @return new network or null when the mapping was cancelled
+   */
   public CyNetwork createCyNetwork(String networkName, CyRootNetwork rootNetwork) {
+    final long start = System.currentTimeMillis();
     CyNetwork network = (rootNetwork == null)
       ? networkFactory.createNetwork()
       : rootNetwork.addSubNetwork();
+    columnWriter = (bulkAttributes) ? new ColumnWriter(network) : null;
+    batchPassed = false;
+
+    if (batchListener != null && !compact && !mergeByUri) {
+      // name it now, for the listener can register the network after the first batch
+      Attributes.set(network, network, CyNetwork.NAME, networkName, String.class);
+      createProgressively(network);
+    } else {
+      // First, create nodes for all Entity class objects
+      createEntityNodes(network, (mergeByUri) ? rootNetwork : null);
+
+      // collect the edges
+      final EdgeList edges = new EdgeList(nodes.length * 2);
+      createInteractionEdges(edges);
+      if (!compact) { //otherwise, components and members are the node attributes
+        createComplexEdges(edges);
+
+        // TODO create pathwayComponent edges (requires pathway nodes)?
+
+        // create PE->memberPE edges!
+        createMemberEdges(edges);
+      }
 
-    // First, create nodes for all Entity class objects
-    createEntityNodes(network);
-
-    // create edges
-    createInteractionEdges(network);
-    createComplexEdges(network);
+      // and add them all to the network
+      addEdges(network, edges, (mergeByUri) ? rootNetwork : null);
+    }
 
-    // TODO create pathwayComponent edges (requires pathway nodes)?
+    if (cancelled) {
+      log.info("Cancelled mapping to the network: " + networkName);
+      // (the batch listener destroys the network it has got, e.g., registered)
+      if (rootNetwork != null && !batchPassed)
+        rootNetwork.removeSubNetwork((CySubNetwork) network);
+      clearNodeIndex();
+      columnWriter = null;
+      return null;
+    }
+    clearNodeIndex();
+
+    if (columnWriter != null) {
+      columnWriter.flush();
+      if (log.isDebugEnabled())
+        log.debug(networkName + ": written " + columnWriter.getRowsSet() + " attribute values, created "
+          + columnWriter.getColumnsCreated() + " columns");
+      columnWriter = null;
+    }
 
-    // create PE->memberPE edges!
-    createMemberEdges(network);
+    if (compact)
+      logCompactReduction(network, System.currentTimeMillis() - start);
 
     // Finally, set network attributes:
 
@@ -859,189 +1142,608 @@ public class BioPaxMapper {
     return network;
   }
 
-  private void createMemberEdges(CyNetwork network) {
+  /*
+   * Logs how much smaller the compact network is than the full hypergraph would be
+   * (estimated from the model, without mapping it) and roughly how much time that saved.
+   */
+  private void logCompactReduction(CyNetwork network, long time) {
+    int fullNodes = 0;
+    long fullEdges = 0;
+    for (Entity e : model.getObjects(Entity.class)) {
+      if (!isTopPathway(e))
+        fullNodes++;
+      if (e instanceof Interaction)
+        fullEdges += ((Interaction) e).getParticipant().size();
+      if (e instanceof Complex)
+        fullEdges += ((Complex) e).getComponent().size();
+      if (e instanceof PhysicalEntity)
+        fullEdges += ((PhysicalEntity) e).getMemberPhysicalEntity().size();
+    }
+    final long mapped = network.getNodeCount() + network.getEdgeCount();
+    final long full = fullNodes + fullEdges;
+    // the full mapping time, assuming it's proportional to the number of nodes and edges (an underestimate,
+    // for the full mode also creates the web link attributes)
+    final long saved = (mapped > 0) ? time * full / mapped - time : 0;
+    log.info(String.format("Compact mode: %d nodes, %d edges (full hypergraph: ~%d nodes, ~%d edges; %.0f%% fewer) "
+        + "mapped in %d ms (~%d ms saved)", network.getNodeCount(), network.getEdgeCount(), fullNodes, fullEdges,
+      (full > 0) ? 100.0 * (full - mapped) / full : 0.0, time, Math.max(saved, 0)));
+  }
+
+  /*
+   * Maps the model in batches, walking the pathway hierarchy from the top pathways down (pathwayComponent),
+   * and then the rest of it. A batch is a (sub-)pathway's interactions and their controls,
+   * with all the participants, complex components and generic members that are not mapped yet;
+   * its nodes, edges and attributes go to the network, and then the network - to the batch listener.
+   * The result is the same network as the one mapped all at once.
+   */
+  private void createProgressively(CyNetwork network) {
+    final List<Entity> entities = new ArrayList<Entity>();
+    for (Entity bpe : model.getObjects(Entity.class))
+      if (!isTopPathway(bpe))
+        entities.add(bpe);
+    nodeIndex.clear();
+    nodes = new CyNode[entities.size()];
+    names = new String[entities.size()];
+    reused = new boolean[entities.size()];
+
+    // interactions, which edges were added
+    final Set<Interaction> linked = Collections.newSetFromMap(new IdentityHashMap<Interaction, Boolean>());
+    final Set<Pathway> visited = Collections.newSetFromMap(new IdentityHashMap<Pathway, Boolean>());
+    final Deque<Pathway> stack = new ArrayDeque<Pathway>();
+    for (Pathway pathway : model.getObjects(Pathway.class))
+      if (pathway.getPathwayComponentOf().isEmpty())
+        stack.push(pathway);
+    int batches = 0;
+    while (!stack.isEmpty() && !cancelled) {
+      final Pathway pathway = stack.pop();
+      if (!visited.add(pathway))
+        continue;
+      final List<Entity> batch = new ArrayList<Entity>();
+      for (Process process : pathway.getPathwayComponent()) {
+        if (process instanceof Pathway) {
+          stack.push((Pathway) process);
+        } else {
+          batch.add(process);
+          batch.addAll(process.getControlledOf());
+        }
+      }
+      batch.addAll(pathway.getControlledOf());
+      if (mapBatch(network, batch, linked, getName(pathway)))
+        batches++;
+    }
+
+    // the rest (not in any pathway)
+    final List<Entity> rest = new ArrayList<Entity>();
+    for (Entity bpe : entities)
+      if (!nodeIndex.containsKey(bpe) || (bpe instanceof Interaction && !linked.contains(bpe)))
+        rest.add(bpe);
+    if (!cancelled && mapBatch(network, rest, linked, "the rest"))
+      batches++;
+
+    if (log.isDebugEnabled())
+      log.debug("Mapped " + nodeIndex.size() + " nodes in " + batches + " batches");
+  }
+
+  /*
+   * Adds the nodes of the entities, and of their participants (interactions), components and members,
+   * that are not in the network yet, then the edges of the not yet linked interactions
+   * and of the new complexes and generics, and notifies the batch listener.
+   * Returns false when nothing was added.
+   */
+  private boolean mapBatch(CyNetwork network, List<Entity> entities, Set<Interaction> linked, String label) {
+    final List<Entity> batch = new ArrayList<Entity>();
+    final Set<Entity> queued = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+    final Set<Interaction> toLink = new LinkedHashSet<Interaction>();
+    for (Entity e : entities) {
+      collect(e, batch, queued);
+      if (e instanceof Interaction && !linked.contains(e) && toLink.add((Interaction) e)) {
+        for (Entity participant : ((Interaction) e).getParticipant())
+          collect(participant, batch, queued);
+      }
+    }
+    if (batch.isEmpty() && toLink.isEmpty())
+      return false;
+
+    addNodes(network, batch, Collections.<String, CyNode>emptyMap(), null);
+
+    final EdgeList edges = new EdgeList(batch.size() * 2);
+    for (Interaction itr : toLink) {
+      addInteraction(edges, itr);
+      linked.add(itr);
+    }
+    for (Entity e : batch) {
+      if (e instanceof Complex)
+        addComplexEdges(edges, (Complex) e);
+      if (e instanceof PhysicalEntity)
+        addMemberEdges(edges, (PhysicalEntity) e);
+    }
+    addEdges(network, edges, null);
+
+    if (cancelled)
+      return false;
+    if (columnWriter != null)
+      columnWriter.flush();
+    batchPassed = true;
+    batchListener.batchMapped(network, label);
+    return true;
+  }
+
+  // adds the not mapped yet entity, with its components and members (recursively), to the batch
+  private void collect(Entity e, List<Entity> batch, Set<Entity> queued) {
+    if (isTopPathway(e) || nodeIndex.containsKey(e) || !queued.add(e))
+      return;
+    batch.add(e);
+    if (e instanceof Complex)
+      for (PhysicalEntity component : ((Complex) e).getComponent())
+        collect(component, batch, queued);
+    if (e instanceof PhysicalEntity)
+      for (PhysicalEntity member : ((PhysicalEntity) e).getMemberPhysicalEntity())
+        collect(member, batch, queued);
+  }
+
+  private void createMemberEdges(EdgeList edges) {
     // for each PE,
     for (PhysicalEntity par : model.getObjects(PhysicalEntity.class)) {
-      Set<PhysicalEntity> members = par.getMemberPhysicalEntity();
-      if (members.isEmpty())
-        continue;
+      if (cancelled)
+        return;
+      addMemberEdges(edges, par);
+    }
+  }
+
+  private void addMemberEdges(EdgeList edges, PhysicalEntity par) {
+    Set<PhysicalEntity> members = par.getMemberPhysicalEntity();
+    if (members.isEmpty())
+      return;
 
-      CyNode cyParentNode = bpeToCyNodeMap.get(par);
-      assert cyParentNode != null : "cyParentNode is NULL.";
-      // for each its member PE, add the directed edge 'member' (from parent to member)
-      for (PhysicalEntity member : members) {
-        CyNode cyMemberNode = bpeToCyNodeMap.get(member);
-        CyEdge edge = network.addEdge(cyParentNode, cyMemberNode, true);
-        Attributes.set(network, edge, "interaction", "member", String.class);
+    Integer parent = nodeIndex.get(par);
+    assert parent != null : "cyParentNode is NULL.";
+    // for each its member PE, add the directed edge 'member' (from parent to member)
+    for (PhysicalEntity member : members) {
+      Integer m = nodeIndex.get(member);
+      if (parent != null && m != null)
+        edges.add(parent, m, "member", false);
+    }
+  }
+
+  /*
+   * Adds the collected edges to the network, in one go, and sets their attributes.
+   */
+  private void addEdges(CyNetwork network, EdgeList edges, CyRootNetwork mergeInto) {
+    final long start = System.currentTimeMillis();
+    int reusedEdges = 0;
+    for (int i = 0; i < edges.size(); i++) {
+      if (cancelled)
+        return;
+      final int src = edges.source(i);
+      final int tgt = edges.target(i);
+      final String type = edges.type(i);
+      if (mergeInto != null && reused[src] && reused[tgt]) {
+        CyEdge existing = findEdge(mergeInto, nodes[src], nodes[tgt], type);
+        if (existing != null) {
+          // the name and interaction columns are local (per sub-network); their shared copies are in the root
+          ((CySubNetwork) network).addEdge(existing);
+          final String name = mergeInto.getSharedEdgeTable().getRow(existing.getSUID())
+            .get(CyRootNetwork.SHARED_NAME, String.class);
+          if (name != null)
+            set(network, existing, CyNetwork.NAME, name);
+          set(network, existing, "interaction", type);
+          reusedEdges++;
+          continue;
+        }
       }
+      CyEdge edge = network.addEdge(nodes[src], nodes[tgt], true);
+      if (edges.named(i))
+        set(network, edge, CyNetwork.NAME, names[src] + type + names[tgt]);
+      set(network, edge, "interaction", type);
+    }
+    if (log.isDebugEnabled())
+      log.debug("Added " + edges.size() + " edges (" + reusedEdges + " existing) in "
+        + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  // the root network's directed edge with the same source, target and interaction type, if any
+  private static CyEdge findEdge(CyRootNetwork root, CyNode src, CyNode tgt, String type) {
+    final CyTable sharedEdgeTable = root.getSharedEdgeTable();
+    for (CyEdge edge : root.getConnectingEdgeList(src, tgt, CyEdge.Type.DIRECTED)) {
+      if (edge.getSource() == src && edge.getTarget() == tgt
+        && type.equals(sharedEdgeTable.getRow(edge.getSUID()).get(CyRootNetwork.SHARED_INTERACTION, String.class)))
+        return edge;
+    }
+    return null;
+  }
+
+  /*
+   * Root network's nodes by URI (the BioPAX-originated ones).
+   */
+  private static Map<String, CyNode> uriIndex(CyRootNetwork root) {
+    final Map<String, CyNode> index = new HashMap<String, CyNode>();
+    final CyTable table = root.getSharedNodeTable();
+    if (table.getColumn(BIOPAX_URI) == null)
+      return index;
+    for (CyRow row : table.getAllRows()) {
+      final String uri = row.get(BIOPAX_URI, String.class);
+      final CyNode node = (uri != null) ? root.getNode(row.get(CyIdentifiable.SUID, Long.class)) : null;
+      if (node != null)
+        index.put(uri, node);
     }
+    return index;
   }
 
-  private void createEntityNodes(CyNetwork network) {
-    Set<Entity> entities = model.getObjects(Entity.class);
-    for (Entity bpe : entities) {
-      // do not make nodes for top/main pathways
-      if (bpe instanceof Pathway) {
-        if (bpe.getParticipantOf().isEmpty()
-          && ((Process) bpe).getPathwayComponentOf().isEmpty())
+  // the hidden (local) node columns this mapper creates
+  private static final String[] HIDDEN_COLUMNS = {BIOPAX_UNIFICATION_REFERENCES,
+    BIOPAX_RELATIONSHIP_REFERENCES, BIOPAX_PUBLICATION_REFERENCES};
+
+  /*
+   * Copies the reused node's BioPAX hidden (local, not shared) attributes, i.e., xref links,
+   * from another sub-network that has the node (other apps' hidden columns are not copied).
+   */
+  private void copyHiddenAttributes(CyRootNetwork root, CyNetwork network, CyNode node) {
+    for (CySubNetwork sub : root.getSubNetworkList()) {
+      if (sub == network || !sub.containsNode(node))
+        continue;
+      final CyRow row = sub.getRow(node, CyNetwork.HIDDEN_ATTRS);
+      for (String name : HIDDEN_COLUMNS) {
+        final CyColumn column = row.getTable().getColumn(name);
+        if (column == null)
+          continue;
+        final boolean list = column.getType() == List.class;
+        final Class<?> type = (list) ? column.getListElementType() : column.getType();
+        final Object value = (list) ? row.getList(name, type) : row.get(name, type);
+        if (value == null)
           continue;
+        if (columnWriter != null && type == String.class)
+          columnWriter.add(node, CyNetwork.HIDDEN_ATTRS, name, value);
+        else
+          Attributes.set(network, node, CyNetwork.HIDDEN_ATTRS, name, value, type);
       }
+      return;
+    }
+  }
 
-      //  Create node symbolizing the interaction
-      CyNode node = network.addNode();
-      bpeToCyNodeMap.put(bpe, node);
+  private void clearNodeIndex() {
+    nodeIndex.clear();
+    nodes = null;
+    names = null;
+    reused = null;
+  }
 
-      // traverse
-      createAttributesFromProperties(bpe, model, node, network);
+  private void createEntityNodes(CyNetwork network, CyRootNetwork mergeInto) {
+    // entities to make nodes for (not for top/main pathways; in the compact mode - only the selected ones)
+    final Set<Entity> selected = (compact) ? compactSelection() : null;
+    final List<Entity> entities = new ArrayList<Entity>();
+    for (Entity bpe : model.getObjects(Entity.class)) {
+      if (isTopPathway(bpe) || (selected != null && !selected.contains(bpe)))
+        continue;
+      entities.add(bpe);
     }
 
+    // existing nodes (merge mode)
+    final Map<String, CyNode> existing = (mergeInto != null)
+      ? uriIndex(mergeInto) : Collections.<String, CyNode>emptyMap();
+
+    nodeIndex.clear();
+    nodes = new CyNode[entities.size()];
+    names = new String[entities.size()];
+    reused = new boolean[entities.size()];
+    final int reusedNodes = addNodes(network, entities, existing, mergeInto);
+
+    if (mergeInto != null)
+      log.info("Merge by URI: reused " + reusedNodes + " existing nodes, mapped "
+        + (entities.size() - reusedNodes) + " new ones");
+
     if (log.isDebugEnabled())
       log.debug(network.getRow(network).get(CyNetwork.NAME, String.class)
         + "" + network.getNodeList().size() + " nodes created.");
   }
 
-  private void createInteractionEdges(CyNetwork network) {
+  /*
+   * Creates (or reuses) the nodes for the entities, which get the next indices (the arrays must fit them).
+   * Returns the number of the reused nodes.
+   */
+  private int addNodes(CyNetwork network, List<Entity> entities,
+                       final Map<String, CyNode> existing, CyRootNetwork mergeInto) {
+    final AttributeDetail detail = (lazyAttributes) ? AttributeDetail.KEY
+      : (compact) ? AttributeDetail.NO_LINKS : AttributeDetail.ALL;
+
+    // compute the node attributes first - it only reads the model, so large ones go in parallel
+    // (fork/join common pool); the results are immutable and in the same order as the entities
+    final Stream<Entity> stream = (entities.size() < PARALLEL_EXTRACT_THRESHOLD)
+      ? entities.stream() : entities.parallelStream();
+    final List<NodeAttributes> attributes = stream
+      .map(bpe -> (cancelled || existing.containsKey(bpe.getUri())) ? null
+        : extractAttributes(bpe, stringPool, xrefSummaries, detail))
+      .collect(Collectors.toList());
+
+    // then create the nodes and apply the attributes in this thread (CyTables are not thread-safe)
+    final int first = nodeIndex.size();
+    int reusedNodes = 0;
+    for (int i = 0; i < entities.size(); i++) {
+      if (cancelled)
+        break;
+      CyNode node = existing.get(entities.get(i).getUri());
+      if (node != null) {
+        // reuse the node, with its (shared) attributes; the name column is local (per sub-network)
+        ((CySubNetwork) network).addNode(node);
+        final String name = mergeInto.getSharedNodeTable().getRow(node.getSUID())
+          .get(CyRootNetwork.SHARED_NAME, String.class);
+        set(network, node, CyNetwork.NAME, (name != null) ? name : getName(entities.get(i)));
+        copyHiddenAttributes(mergeInto, network, node);
+        reused[first + i] = true;
+        reusedNodes++;
+      } else {
+        node = network.addNode();
+        if (columnWriter != null)
+          columnWriter.add(node, attributes.get(i));
+        else
+          attributes.get(i).writeTo(network, node);
+        if (compact)
+          setCollapsed(network, node, entities.get(i));
+      }
+      nodeIndex.put(entities.get(i), first + i);
+      nodes[first + i] = node;
+      names[first + i] = getName(entities.get(i));
+    }
+    return reusedNodes;
+  }
+
+  private static boolean isTopPathway(Entity bpe) {
+    return bpe instanceof Pathway && bpe.getParticipantOf().isEmpty()
+      && ((Process) bpe).getPathwayComponentOf().isEmpty();
+  }
+
+  /*
+   * Entities to map in the compact mode: the interactions that involve the seeds (all when no seeds),
+   * the controls of those, their participants, and the seeds themselves; generic members
+   * and complex components are not there unless they are participants (or seeds) too.
+   */
+  private Set<Entity> compactSelection() {
+    final Set<Entity> selected = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+    final Deque<Interaction> queue = new ArrayDeque<Interaction>();
+    for (Interaction itr : model.getObjects(Interaction.class)) {
+      if (seeds.isEmpty() || isSeed(itr))
+        queue.add(itr);
+      else {
+        for (Entity e : itr.getParticipant()) {
+          if (isSeed(e)) {
+            queue.add(itr);
+            break;
+          }
+        }
+      }
+    }
+    while (!queue.isEmpty()) {
+      final Interaction itr = queue.poll();
+      if (!selected.add(itr))
+        continue;
+      selected.addAll(itr.getParticipant());
+      queue.addAll(itr.getControlledOf());
+    }
+    if (!seeds.isEmpty()) {
+      for (Entity e : model.getObjects(Entity.class))
+        if (isSeed(e))
+          selected.add(e);
+    }
+    return selected;
+  }
+
+  // the entity, or its member/component, is one of the seeds
+  private boolean isSeed(Entity e) {
+    if (matchesSeed(e))
+      return true;
+    if (e instanceof PhysicalEntity) {
+      for (PhysicalEntity m : ((PhysicalEntity) e).getMemberPhysicalEntity())
+        if (matchesSeed(m))
+          return true;
+      if (e instanceof Complex)
+        for (PhysicalEntity c : ((Complex) e).getComponent())
+          if (matchesSeed(c))
+            return true;
+    }
+    return false;
+  }
+
+  // the entity's (or its entity reference's) URI or an xref id is a seed
+  private boolean matchesSeed(Entity e) {
+    if (seeds.contains(e.getUri()) || matchesSeed(e.getXref()))
+      return true;
+    if (e instanceof SimplePhysicalEntity) {
+      EntityReference er = ((SimplePhysicalEntity) e).getEntityReference();
+      return er != null && (seeds.contains(er.getUri()) || matchesSeed(er.getXref()));
+    }
+    return false;
+  }
+
+  private boolean matchesSeed(Collection<Xref> xrefs) {
+    for (Xref x : xrefs)
+      if (x.getId() != null && seeds.contains(x.getId()))
+        return true;
+    return false;
+  }
+
+  /*
+   * Compact mode: sets the generic's members and the complex's components (names)
+   * as the node's list attributes instead of creating their nodes and edges.
+   */
+  private void setCollapsed(CyNetwork network, CyNode node, Entity bpe) {
+    if (!(bpe instanceof PhysicalEntity))
+      return;
+    final Set<PhysicalEntity> members = ((PhysicalEntity) bpe).getMemberPhysicalEntity();
+    if (!members.isEmpty())
+      set(network, node, BIOPAX_MEMBERS, collapsedNames(members));
+    if (bpe instanceof Complex) {
+      final Set<PhysicalEntity> components = ((Complex) bpe).getComponent();
+      if (!components.isEmpty())
+        set(network, node, BIOPAX_COMPONENTS, collapsedNames(components));
+    }
+  }
+
+  private List<String> collapsedNames(Collection<PhysicalEntity> entities) {
+    final Set<String> values = new TreeSet<String>();
+    for (PhysicalEntity pe : entities) {
+      final String name = intern(stringPool, getName(pe));
+      if (name != null)
+        values.add(name);
+    }
+    return new ArrayList<String>(values);
+  }
+
+  private void createInteractionEdges(EdgeList edges) {
     Collection<Interaction> interactionList = model.getObjects(Interaction.class);
     for (Interaction itr : interactionList) {
-      log.trace("Mapping " + itr.getModelInterface().getSimpleName() + " edges : " + itr.getUri());
-      // convert each disjoint sub-class (of Interaction)
-      if (itr instanceof Conversion) {
-        addConversionInteraction(network, (Conversion) itr);
-      } else if (itr instanceof Control) {
-        addControlInteraction(network, (Control) itr);
-      } else if (itr instanceof MolecularInteraction) {
-        addPhysicalInteraction(network, (MolecularInteraction) itr);
-      } else if (itr instanceof GeneticInteraction) {
-        addGeneticInteraction(network, (GeneticInteraction) itr);
-      } else if (itr instanceof TemplateReaction) {
-        addTemplateReaction(network, (TemplateReaction) itr);
-      } else { //never
-        throw new IllegalArgumentException("Bug: impossible itr type: " + itr.getModelInterface().getSimpleName());
-      }
+      if (cancelled)
+        return;
+      if (compact && !nodeIndex.containsKey(itr))
+        continue; //not selected
+      addInteraction(edges, itr);
+    }
+  }
+
+  private void addInteraction(EdgeList edges, Interaction itr) {
+    log.trace("Mapping " + itr.getModelInterface().getSimpleName() + " edges : " + itr.getUri());
+    // convert each disjoint sub-class (of Interaction)
+    if (itr instanceof Conversion) {
+      addConversionInteraction(edges, (Conversion) itr);
+    } else if (itr instanceof Control) {
+      addControlInteraction(edges, (Control) itr);
+    } else if (itr instanceof MolecularInteraction) {
+      addPhysicalInteraction(edges, (MolecularInteraction) itr);
+    } else if (itr instanceof GeneticInteraction) {
+      addGeneticInteraction(edges, (GeneticInteraction) itr);
+    } else if (itr instanceof TemplateReaction) {
+      addTemplateReaction(edges, (TemplateReaction) itr);
+    } else { //never
+      throw new IllegalArgumentException("Bug: impossible itr type: " + itr.getModelInterface().getSimpleName());
     }
   }
 
-  private void createComplexEdges(CyNetwork network) {
+  private void createComplexEdges(EdgeList edges) {
     // iterate through all pe's
     for (Complex complexElement : model.getObjects(Complex.class)) {
-      Set<PhysicalEntity> members = complexElement.getComponent();
-      if (members.isEmpty())
-        continue;
+      if (cancelled)
+        return;
+      addComplexEdges(edges, complexElement);
+    }
+  }
 
-      // get node
-      CyNode complexCyNode = bpeToCyNodeMap.get(complexElement);
+  private void addComplexEdges(EdgeList edges, Complex complexElement) {
+    Set<PhysicalEntity> members = complexElement.getComponent();
+    if (members.isEmpty())
+      return;
 
-      // get all components. There can be 0 or more
-      for (PhysicalEntity member : members) {
-        CyNode complexMemberCyNode = bpeToCyNodeMap.get(member);
-        // create edge, set attributes
-        CyEdge edge = network.addEdge(complexCyNode, complexMemberCyNode, true);
-        Attributes.set(network, edge, "interaction", "contains", String.class);
-      }
+    // get node
+    Integer complex = nodeIndex.get(complexElement);
+
+    // get all components. There can be 0 or more
+    for (PhysicalEntity member : members) {
+      Integer m = nodeIndex.get(member);
+      if (complex != null && m != null)
+        edges.add(complex, m, "contains", false);
     }
   }
 
   /*
    * Adds a Physical Interaction (binding) between two proteins.
    */
-  private void addPhysicalInteraction(CyNetwork network, MolecularInteraction interaction) {
+  private void addPhysicalInteraction(EdgeList edges, MolecularInteraction interaction) {
     Collection<Entity> participants = interaction.getParticipant();
     for (Entity e : participants) {
-      linkNodes(network, e, interaction, "participant"); //like 'left'
+      linkNodes(edges, e, interaction, "participant"); //like 'left'
     }
   }
 
-  private void addGeneticInteraction(CyNetwork network, GeneticInteraction interaction) {
+  private void addGeneticInteraction(EdgeList edges, GeneticInteraction interaction) {
     Collection<Entity> participants = interaction.getParticipant();
     for (Entity e : participants) {
-      linkNodes(network, e, interaction, "participant"); //like 'left'
+      linkNodes(edges, e, interaction, "participant"); //like 'left'
     }
   }
 
   /*
    * Adds a Conversion Interaction.
    */
-  private void addConversionInteraction(CyNetwork network, Conversion conversion) {
+  private void addConversionInteraction(EdgeList edges, Conversion conversion) {
     //Left Side
     Collection<PhysicalEntity> leftSideElements = conversion.getLeft();
     for (PhysicalEntity e : leftSideElements) {
-      linkNodes(network, e, conversion, "left");
+      linkNodes(edges, e, conversion, "left");
     }
     //Right Side
     Collection<PhysicalEntity> rightSideElements = conversion.getRight();
     for (PhysicalEntity e : rightSideElements) {
-      linkNodes(network, conversion, e, "right");
+      linkNodes(edges, conversion, e, "right");
     }
   }
 
-  private void addTemplateReaction(CyNetwork network, TemplateReaction templateReaction) {
+  private void addTemplateReaction(EdgeList edges, TemplateReaction templateReaction) {
     //to fix an invalid biopax models, lets save all participants first...
     Collection<Entity> participants = new HashSet<>(templateReaction.getParticipant());
     //process 'template' property (can be null/empty in some data)
     NucleicAcid template = templateReaction.getTemplate();
     if (template != null) {
-      linkNodes(network, template, templateReaction, "template");
+      linkNodes(edges, template, templateReaction, "template");
       participants.remove(template);
     }
     // process product(s)
     Collection<PhysicalEntity> products = templateReaction.getProduct();
     for (PhysicalEntity e : products) {
-      linkNodes(network, templateReaction, e, "product");
+      linkNodes(edges, templateReaction, e, "product");
       participants.remove(e);
     }
     //finally, let's link the rest participants, if any, with 'participant' edge type
     for (Entity e : participants) {
-      linkNodes(network, e, templateReaction, "participant");
+      linkNodes(edges, e, templateReaction, "participant");
     }
   }
 
   /*
    * Add directed edge two nodes.
    */
-  private void linkNodes(CyNetwork network, BioPAXElement src, BioPAXElement tgt, String type) {
-    // Note: getCyNode also assigns cellular location attribute...
-    CyNode srcNode = bpeToCyNodeMap.get(src);
+  private void linkNodes(EdgeList edges, BioPAXElement src, BioPAXElement tgt, String type) {
+    Integer srcNode = nodeIndex.get(src);
     if (srcNode == null) {
       log.debug("linkNodes: no node was created for " + src.getModelInterface() + " " + src.getUri());
       return;
     }
 
-    CyNode tgtNode = bpeToCyNodeMap.get(tgt);
+    Integer tgtNode = nodeIndex.get(tgt);
     if (tgtNode == null) {
       log.debug("linkNodes: no node was created for " + tgt.getModelInterface() + " " + tgt.getUri());
       return;
     }
 
-    CyEdge edge = null;
-    String a = getName(src);
-    String b = getName(tgt);
-    edge = network.addEdge(srcNode, tgtNode, true);
-    Attributes.set(network, edge, CyNetwork.NAME, a + type + b, String.class);
-    Attributes.set(network, edge, "interaction", type, String.class);
+    edges.add(srcNode, tgtNode, type, true);
+  }
+
+  // buffers or writes the default table String (or List of String) value
+  private void set(CyNetwork network, CyIdentifiable entry, String column, Object value) {
+    if (columnWriter != null)
+      columnWriter.add(entry, column, value);
+    else
+      Attributes.set(network, entry, column, value, String.class);
   }
 
   /*
    * Adds a BioPAX Control Interaction.
    */
-  private void addControlInteraction(CyNetwork network, Control control) {
+  private void addControlInteraction(EdgeList edges, Control control) {
     Collection<Process> controlledList = control.getControlled();
     for (Process process : controlledList) {
       // Determine the BioPAX Edge Type
       ControlType cType = control.getControlType(); //e.g., ACTIVATION
       String typeStr = (cType == null) ? "controlled" : cType.toString();
-      linkNodes(network, control, process, typeStr); //from Control to controlled process (like 'right')
+      linkNodes(edges, control, process, typeStr); //from Control to controlled process (like 'right')
     }
 
     Collection<Controller> controllerList = control.getController();
     for (Controller controller : controllerList) {
-      linkNodes(network, controller, control, "controller"); //like 'left'
+      linkNodes(edges, controller, control, "controller"); //like 'left'
     }
 
     // cofactor
     if (control instanceof Catalysis) {
       Collection<PhysicalEntity> coFactors = ((Catalysis) control).getCofactor();
       for (PhysicalEntity e : coFactors) {
-        linkNodes(network, e, control, "cofactor"); //like 'left'
+        linkNodes(edges, e, control, "cofactor"); //like 'left'
       }
     }
   }
@@ -6,12 +6,14 @@ import org.biopax.paxtools.model.Model;
 import org.biopax.paxtools.model.level3.Entity;
 import org.biopax.paxtools.model.level3.EntityReference;
 import org.biopax.paxtools.pattern.miner.SIFEnum;
+import org.biopax.paxtools.pattern.miner.SIFInteraction;
 import org.biopax.paxtools.pattern.miner.SIFType;
 import org.cytoscape.application.NetworkViewRenderer;
 import org.cytoscape.io.read.CyNetworkReader;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.CyNetworkViewFactory;
 import org.cytoscape.work.AbstractTask;
@@ -24,8 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.security.DigestInputStream;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -37,6 +40,14 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
 
   private static final String CREATE_NEW_COLLECTION = "A new network collection";
 
+  // the "Lazy Node Attributes" option default value (Cytoscape property)
+  static final String PROP_LAZY_ATTRIBUTES = "cypath2.lazy.attributes";
+  // the number of BioPAX elements above which the hypergraph is compact (Cytoscape property; 0 - never)
+  static final String PROP_COMPACT_THRESHOLD = "cypath2.compact.threshold";
+  static final int DEFAULT_COMPACT_THRESHOLD = 100000;
+  // the "Encoded Edge Lists" option default value (Cytoscape property)
+  static final String PROP_ENCODE_SIF_LISTS = "cypath2.sif.encode.lists";
+
   private final HashMap<String, CyRootNetwork> nameToRootNetworkMap;
   private final Collection<CyNetwork> networks;
   @Tunable(description = "BioPAX Mapping:", groups = {"Options"}, tooltip = "<html>How to process the BioPAX result:" +
@@ -56,19 +67,80 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     tooltip = "Select interaction types to infer from the BioPAX result",
     gravity = 703, dependsOn = "readerMode=Binary")
   public ListMultipleSelection<SIFType> sifSelection;
-  private InputStream stream;
+  //create only the key node attributes now, the rest - for selected nodes or on request
+  @Tunable(description = "Lazy Node Attributes:", groups = {"Options"},
+    tooltip = "<html>Create only URI, type, name and primary ID node attributes now, and the rest - " +
+      "when a node is selected<br/>or using <em>Apps &gt; PathwayCommons &gt; Materialize All BioPAX Attributes</em> " +
+      "(faster import, less memory for large networks)</html>",
+    gravity = 704, dependsOn = "readerMode=Hypergraph")
+  public boolean lazyAttributes = Boolean.parseBoolean(App.getProperty(PROP_LAZY_ATTRIBUTES, "false"));
+  //reuse the parent network collection's nodes (by URI) instead of mapping the same BioPAX elements again
+  @Tunable(description = "Merge by URI:", groups = {"Options"},
+    tooltip = "<html>When a parent network collection is selected, reuse its nodes (and their attributes) " +
+      "that have the same URI,<br/>and only map the new BioPAX elements</html>",
+    gravity = 705, dependsOn = "readerMode=Hypergraph")
+  public boolean mergeByUri = false;
+  //store the SIF edge datasource/publication/pathway lists as codes (decoded for selected edges)
+  @Tunable(description = "Encoded Edge Lists:", groups = {"Options"},
+    tooltip = "<html>Store the datasource, publication and pathway edge attributes as codes " +
+      "of the network's dictionaries (less memory for large networks);<br/>decode them for the selected edges " +
+      "or using <em>Apps &gt; PathwayCommons &gt; Materialize All BioPAX Attributes</em></html>",
+    gravity = 706, dependsOn = "readerMode=Binary")
+  public boolean encodeSifLists = Boolean.parseBoolean(App.getProperty(PROP_ENCODE_SIF_LISTS, "false"));
+  // locally saved data (e.g., a cached query result): the model snapshot (tried first) and BioPAX file
+  private File snapshot;
+  private File owl;
+  private Model model;
+  private volatile BioPaxMapper mapper;
+  private final StringPool stringPool;
   private String inputName;
   private CyRootNetwork rootNetwork;
+  // queried entities (URIs, ids), for the compact hypergraph mode
+  private Collection<String> seeds;
+  // whether to register the network and view after the first mapped sub-pathway (see NetworkAndViewTask)
+  private boolean progressive;
+  // identifies the data, to cache the model normalized for SIF (null - do not);
+  // replaced with the hash of the BioPAX data when these are parsed here
+  private String dataKey;
+
+  /**
+   * Constructor
+   * (for the locally saved data, e.g., a cached query result).
+   *
+   * @param snapshot   binary model snapshot (see {@link ModelSnapshot}) to load, or null
+   * @param owl        BioPAX file (can be gzipped) to parse when there is no snapshot or it cannot be loaded
+   * @param stringPool string pool (the mapper continues using it)
+   * @param inputName  a file or pathway name (can be later updated using actual data)
+   */
+  public BioPaxReaderTask(File snapshot, File owl, StringPool stringPool, String inputName) {
+    this(null, stringPool, inputName);
+    this.snapshot = snapshot;
+    this.owl = owl;
+  }
 
   /**
    * Constructor
+   * (when the BioPAX model was already built while the data were being downloaded).
    *
-   * @param stream    input biopax stream
+   * @param model     BioPAX model (Level3), e.g., from {@link BioPaxMapper#prepare(Model)}
    * @param inputName a file or pathway name (can be later updated using actual data)
    */
-  public BioPaxReaderTask(InputStream stream, String inputName) {
+  public BioPaxReaderTask(Model model, String inputName) {
+    this(model, new StringPool(), inputName);
+  }
+
+  /**
+   * Constructor
+   * (when the BioPAX model was already built while the data were being downloaded).
+   *
+   * @param model      BioPAX model (Level3), e.g., from {@link BioPaxMapper#prepare(Model, StringPool)}
+   * @param stringPool the string pool used to build the model (the mapper continues using it)
+   * @param inputName  a file or pathway name (can be later updated using actual data)
+   */
+  public BioPaxReaderTask(Model model, StringPool stringPool, String inputName) {
     this.networks = new HashSet<>();
-    this.stream = stream;
+    this.stringPool = stringPool;
+    this.model = model;
     this.inputName = inputName;
 
     // initialize the root networks Collection
@@ -110,6 +182,41 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     rendererList = new ListSingleSelection<>(renderers);
   }
 
+  /**
+   * Sets the queried entities, to map only the interactions that involve them
+   * when the model is too large and gets mapped to the compact hypergraph
+   * (see {@link BioPaxMapper#setCompact(boolean)}).
+   *
+   * @param seeds URIs or identifiers (can be null)
+   */
+  public void setSeeds(Collection<String> seeds) {
+    this.seeds = seeds;
+  }
+
+  /**
+   * Whether to map the hypergraph progressively, sub-pathway by sub-pathway, and register
+   * the network and its view as soon as the first batch is mapped, then refresh the view
+   * (the caller must not register them again). Not for the Cytoscape network readers,
+   * which register the networks themselves.
+   *
+   * @param progressive true/false (default)
+   */
+  public void setProgressive(boolean progressive) {
+    this.progressive = progressive;
+  }
+
+  /**
+   * Sets what identifies the data, e.g., the hash of the downloaded BioPAX data or the normalized query
+   * (see {@link ResultCache.Key}), so that the model normalized for the Binary (SIF) mapping is cached and reused
+   * next time the same data are converted (see {@link BioPaxMapper#normalizeForSif(Model, String)}).
+   * Not required when the reader parses the BioPAX file itself (then the file data hash is the key).
+   *
+   * @param dataKey data key or null (default) - do not cache
+   */
+  public void setDataKey(String dataKey) {
+    this.dataKey = dataKey;
+  }
+
   @ProvidesTitle()
   public String tunableDialogTitle() {
     return "Cy Network and View from Pathway Commons query";
@@ -122,15 +229,46 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
 
     if (cancelled) return;
 
-    // import BioPAX data into a new in-memory model
-    Model model = null;
-    try {
-      model = BioPaxMapper.read(stream);
-    } catch (Throwable e) {
-      throw new RuntimeException("BioPAX reader failed to build a BioPAX model " +
-        "(check the data for syntax errors) - " + e);
+    final long start = System.currentTimeMillis();
+
+    // load the model snapshot, if any (much faster than parsing the BioPAX)
+    if (model == null && snapshot != null) {
+      taskMonitor.setStatusMessage("Loading the BioPAX model snapshot...");
+      try {
+        model = ModelSnapshot.read(snapshot);
+      } catch (IOException e) {
+        log.warn("Cannot load the snapshot " + snapshot + "; will parse " + owl + " instead", e);
+      }
+    }
+
+    // parse the BioPAX file (unless the model's been loaded already);
+    // reading the file reports the progress (up to 50%), stops once the task is cancelled,
+    // and hashes the raw bytes (the data key)
+    if (model == null && owl != null) {
+      taskMonitor.setStatusMessage("Reading BioPAX data...");
+      InputStream in = new BufferedInputStream(new FileInputStream(owl));
+      try {
+        final DigestInputStream digest = NormalizedModelCache.digesting(
+          new ProgressInputStream(in, owl.length(), taskMonitor, 0.0, 0.5, () -> cancelled));
+        in = digest;
+        if (owl.getName().endsWith(".gz"))
+          in = new GZIPInputStream(in);
+        model = BioPaxMapper.read(in, stringPool);
+        dataKey = NormalizedModelCache.key(digest);
+      } catch (Throwable e) {
+        if (cancelled) {
+          log.info("Cancelled reading BioPAX data");
+          return;
+        }
+        throw new RuntimeException("BioPAX reader failed to build a BioPAX model " +
+          "(check the data for syntax errors) - " + e);
+      } finally {
+        in.close();
+      }
     }
 
+    if (cancelled) return;
+
     if (model == null) {
       throw new RuntimeException("BioPAX reader did not find any BioPAX data there.");
     }
@@ -142,16 +280,39 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     //set parent/root network (can be null - add a new networks group)
     rootNetwork = nameToRootNetworkMap.get(rootNetworkSelection.getSelectedValue());
 
-    final BioPaxMapper mapper = new BioPaxMapper(model, App.cyServices.networkFactory);
+    taskMonitor.setProgress(0.5);
+    mapper = new BioPaxMapper(model, App.cyServices.networkFactory, stringPool);
 
     ReaderMode selectedMode = readerMode.getSelectedValue();
     switch (selectedMode) {
       case HYPERGRAPH:
         // Map BioPAX Data to Cytoscape Nodes/Edges (run as task)
         taskMonitor.setStatusMessage("Mapping BioPAX model to CyNetwork...");
+        mapper.setLazyAttributes(lazyAttributes);
+        mapper.setMergeByUri(mergeByUri);
+        final int compactThreshold = (int) App.getLongProperty(PROP_COMPACT_THRESHOLD, DEFAULT_COMPACT_THRESHOLD);
+        if (compactThreshold > 0 && model.getObjects().size() > compactThreshold) {
+          log.info("The model has more than " + compactThreshold + " BioPAX elements; " +
+            "mapping to the compact hypergraph" + ((seeds != null && !seeds.isEmpty())
+            ? " (interactions of " + seeds.size() + " queried entities)" : ""));
+          taskMonitor.setStatusMessage("Large model - mapping to the compact hypergraph...");
+          mapper.setCompact(true);
+          mapper.setSeeds(seeds);
+        }
+        final ProgressiveView progressiveView = (progressive) ? new ProgressiveView(taskMonitor) : null;
+        mapper.setBatchListener(progressiveView);
         CyNetwork network = mapper.createCyNetwork(networkName, rootNetwork);
+        if (network == null) { //cancelled
+          if (progressiveView != null)
+            progressiveView.discard();
+          return;
+        }
+        if (lazyAttributes) //keep the model to create other node attributes later
+          ModelRegistry.register(network, model);
         if (network.getNodeCount() == 0)
           throw new RuntimeException("Pathway is empty. Please check the BioPAX source file.");
+        log.info("Mapped " + network.getNodeCount() + " nodes, " + network.getEdgeCount()
+          + " edges in " + (System.currentTimeMillis() - start) + " ms; " + stringPool);
         // set the biopax network mapping type for other plugins
         Attributes.set(network, network, BioPaxMapper.BIOPAX_NETWORK,
           BiopaxVisualStyleUtil.BIO_PAX_VISUAL_STYLE, String.class);
@@ -161,30 +322,36 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
         break;
 
       case BINARY:
-        //convert BioPAX to the custom binary SIF format (using a tmp file)
+        //convert BioPAX to binary interactions, and these - to network nodes and edges
         taskMonitor.setStatusMessage("Mapping BioPAX model to SIF, then to CyNetwork...");
-        final File tmpSifFile = File.createTempFile("tmp_biopax2sif", ".sif");
-        tmpSifFile.deleteOnExit();
-        BioPaxMapper.convertToCustomSIF(model,
-          sifSelection.getSelectedValues().toArray(new SIFType[]{}),
-          new FileOutputStream(tmpSifFile));
+        //(same data converted before - the normalized model is cached; the original one is not changed then)
+        final Model sifModel = BioPaxMapper.normalizeForSif(model, dataKey);
+        final Set<SIFInteraction> binaryInts = BioPaxMapper.searchSif(sifModel,
+          sifSelection.getSelectedValues().toArray(new SIFType[]{}), BioPaxMapper.parallelSif());
+        if (cancelled) return;
 
         // create a new CyNetwork
         CyNetwork net = (rootNetwork == null)
           ? App.cyServices.networkFactory.createNetwork()
           : rootNetwork.addSubNetwork();
 
-        // line-by-line parse the custom SIF file (- create nodes, edges and edge attributes)
-        CustomSifParser customSifParser = new CustomSifParser(net, App.cyServices);
-        BufferedReader reader = Files.newBufferedReader(tmpSifFile.toPath());
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-          customSifParser.parse(line);
+        // create nodes, edges and edge attributes (in the same, sorted, order as the SIF text rows were)
+        final List<SIFInteraction> interList = new ArrayList<SIFInteraction>(binaryInts);
+        Collections.sort(interList);
+        CustomSifParser customSifParser = new CustomSifParser(net, encodeSifLists);
+        for (SIFInteraction inter : interList) {
+          if (cancelled) break;
+          customSifParser.add(inter);
         }
-        reader.close();
+        customSifParser.finish();
 
         // create node attributes from the BioPAX properties
-        createSifNodeAttr(model, net, taskMonitor);
+        createSifNodeAttr(sifModel, net, taskMonitor);
+        if (cancelled) {
+          if (rootNetwork != null)
+            rootNetwork.removeSubNetwork((CySubNetwork) net);
+          return;
+        }
 
         // final touches -
         // set the biopax network mapping type for other plugins to use/consider
@@ -209,19 +376,22 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     Attributes.set(cyNetwork, cyNetwork, "quickfind.default_index", CyNetwork.NAME, String.class);
     if (cancelled) return;
 
-    // Set node attributes from the Biopax Model
+    // Set node attributes from the Biopax Model (written in bulk, column by column, at the end)
+    final ColumnWriter columnWriter = new ColumnWriter(cyNetwork);
     for (CyNode node : cyNetwork.getNodeList()) {
+      if (cancelled) return;
       String uri = cyNetwork.getRow(node).get(CyNetwork.NAME, String.class);
       BioPAXElement e = model.getByID(uri);
       if (e instanceof EntityReference || e instanceof Entity) {
-        BioPaxMapper.createAttributesFromProperties(e, model, node, cyNetwork);
+        columnWriter.add(node, BioPaxMapper.extractAttributes(e, stringPool));
       } else if (e != null) {
         log.warn("SIF network has an unexpected node: " + uri + " of type " + e.getModelInterface());
-        BioPaxMapper.createAttributesFromProperties(e, model, node, cyNetwork);
+        columnWriter.add(node, BioPaxMapper.extractAttributes(e, stringPool));
       } else { //should never happen anymore...
         log.error("(BUG) the biopax model does not have an object with URI=" + uri);
       }
     }
+    columnWriter.flush();
   }
 
   private String getNetworkName(Model model) {
@@ -248,6 +418,14 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     return name;
   }
 
+  @Override
+  public void cancel() {
+    super.cancel();
+    final BioPaxMapper m = mapper;
+    if (m != null)
+      m.cancel();
+  }
+
   @Override
   public CyNetwork[] getNetworks() {
     return networks.toArray(new CyNetwork[]{});
@@ -263,6 +441,51 @@ public class BioPaxReaderTask extends AbstractTask implements CyNetworkReader {
     return view;
   }
 
+  /*
+   * Registers the network being mapped, with a view, after the first batch,
+   * and then re-applies the style to the view after some of the next batches (less and less often);
+   * no layout here - the caller lays out the view once, after the mapping is done.
+   */
+  private final class ProgressiveView implements BioPaxMapper.BatchListener {
+    private final TaskMonitor taskMonitor;
+    private CyNetwork network;
+    private CyNetworkView view;
+    private long refreshed;
+    private long interval = 1000; //ms
+
+    ProgressiveView(TaskMonitor taskMonitor) {
+      this.taskMonitor = taskMonitor;
+    }
+
+    @Override
+    public void batchMapped(CyNetwork network, String label) {
+      taskMonitor.setStatusMessage("Mapped " + ((label != null) ? label : "a sub-pathway")
+        + " (" + network.getNodeCount() + " nodes so far)");
+      final long now = System.currentTimeMillis();
+      if (view == null) {
+        // the style depends on this attribute
+        Attributes.set(network, network, BioPaxMapper.BIOPAX_NETWORK,
+          BiopaxVisualStyleUtil.BIO_PAX_VISUAL_STYLE, String.class);
+        App.cyServices.networkManager.addNetwork(network);
+        this.network = network;
+        view = buildCyNetworkView(network);
+        NetworkAndViewTask.applyStyle(view);
+        refreshed = now;
+      } else if (now - refreshed >= interval) {
+        App.cyServices.eventHelper.flushPayloadEvents();
+        NetworkAndViewTask.applyStyle(view);
+        refreshed = now;
+        interval *= 2;
+      }
+    }
+
+    // destroys the registered network (with its view) of the cancelled mapping
+    void discard() {
+      if (network != null)
+        App.cyServices.networkManager.destroyNetwork(network);
+    }
+  }
+
   private CyNetworkViewFactory getNetworkViewFactory() {
     if (rendererList != null && rendererList.getSelectedValue() != null)
       return rendererList.getSelectedValue().getNetworkViewFactory();
@@ -0,0 +1,191 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.*;
+import org.biopax.paxtools.converter.LevelUpgrader;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level2.physicalEntity;
+import org.biopax.paxtools.model.level2.physicalEntityParticipant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Memory-bounded BioPAX Level2 to Level3 conversion.
+ * <p>
+ * The default LevelUpgrader builds the entire L3 model next to the L2 one,
+ * which doubles the peak memory. This orders the L2 objects so that the objects
+ * an object refers to come first (depth-first, from the root elements, then from
+ * the objects left, which are only referred to from reference cycles), upgrades them
+ * in chunks of up to about the chunk size not yet converted objects, merges the L3 results
+ * into one model, and removes the converted objects from the L2 model, so they can be
+ * garbage collected as their L3 counterparts are created (once their parents are converted too).
+ * A chunk's sub-model also contains, as stubs, the converted objects the chunk refers to
+ * (and the physical entities of such participants, to get their L3 types);
+ * their L3 copies are incomplete, and the merger replaces them with the ones already converted.
+ *
+ * @author rodche
+ */
+final class ChunkedLevelUpgrader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedLevelUpgrader.class);
+
+  static final String PROP_CHUNK_SIZE = "cypath2.upgrade.chunk.size";
+  static final int DEFAULT_CHUNK_SIZE = 50000;
+
+  private static final EditorMap EDITOR_MAP = SimpleEditorMap.L2;
+
+  private final int chunkSize;
+
+  /**
+   * Constructor.
+   *
+   * @param chunkSize approx. max number of L2 objects to convert at once;
+   *                  0 - convert the whole model at once (LevelUpgrader)
+   */
+  ChunkedLevelUpgrader(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Creates the upgrader with the chunk size set via the Cytoscape property
+   * (or the default one).
+   */
+  ChunkedLevelUpgrader() {
+    this((int) App.getLongProperty(PROP_CHUNK_SIZE, DEFAULT_CHUNK_SIZE));
+  }
+
+  /**
+   * Converts the BioPAX L2 model to L3 (the L2 model gets emptied).
+   *
+   * @param l2 BioPAX Level2 model
+   * @return new BioPAX Level3 model
+   */
+  Model filter(final Model l2) {
+    if (chunkSize <= 0 || l2.getObjects().size() <= chunkSize)
+      return new LevelUpgrader().filter(l2);
+
+    final long start = System.currentTimeMillis();
+    final int total = l2.getObjects().size();
+    final List<BioPAXElement> order = order(l2);
+
+    // upgrade chunk by chunk, merge into the new L3 model, and release the L2 objects
+    // (converted ones are no longer in the L2 model)
+    final Model l3 = BioPAXLevel.L3.getDefaultFactory().createModel();
+    l3.setXmlBase(l2.getXmlBase());
+    final SimpleMerger merger = new SimpleMerger(SimpleEditorMap.L3);
+    int chunks = 0;
+    int stubs = 0;
+    int next = 0;
+    while (next < order.size()) {
+      final Set<BioPAXElement> chunk = identitySet();
+      while (next < order.size() && chunk.size() < chunkSize) {
+        final BioPAXElement e = order.set(next++, null); //release
+        if (l2.contains(e)) //(not yet converted with a previous chunk)
+          chunk.add(e);
+      }
+      if (chunk.isEmpty())
+        continue;
+
+      // add the not yet converted objects the chunk refers to (only via reference cycles), and so on
+      final Deque<BioPAXElement> queue = new ArrayDeque<BioPAXElement>(chunk);
+      while (!queue.isEmpty())
+        for (BioPAXElement child : children(queue.poll()))
+          if (l2.contains(child) && chunk.add(child))
+            queue.add(child);
+
+      // the sub-model: the chunk and the stubs (already converted objects the chunk refers to)
+      final Model sub = BioPAXLevel.L2.getDefaultFactory().createModel();
+      sub.setXmlBase(l2.getXmlBase());
+      for (BioPAXElement e : chunk)
+        sub.add(e);
+      for (BioPAXElement e : chunk) {
+        for (BioPAXElement child : children(e)) {
+          if (sub.contains(child))
+            continue;
+          sub.add(child);
+          stubs++;
+          if (child instanceof physicalEntityParticipant) {
+            final physicalEntity pe = ((physicalEntityParticipant) child).getPHYSICAL_ENTITY();
+            if (pe != null && !sub.contains(pe)) {
+              sub.add(pe);
+              stubs++;
+            }
+          }
+        }
+      }
+
+      merger.merge(l3, new LevelUpgrader().filter(sub));
+      for (BioPAXElement e : chunk)
+        l2.remove(e);
+      chunks++;
+
+      if (LOGGER.isDebugEnabled())
+        LOGGER.debug("Upgraded chunk " + chunks + " (" + chunk.size() + " objects, " + sub.getObjects().size()
+          + " with stubs); L2 objects left: " + l2.getObjects().size() + ", L3 objects: " + l3.getObjects().size());
+    }
+
+    LOGGER.info("Upgraded " + total + " L2 objects in " + chunks + " chunks (" + stubs + " stubs) to "
+      + l3.getObjects().size() + " L3 objects in " + (System.currentTimeMillis() - start) + " ms");
+
+    return l3;
+  }
+
+  /*
+   * Orders all the objects so that the children go before their parents (except in reference cycles):
+   * depth-first post-order traversal from the root elements (not values of any object property)
+   * and then - from each object not visited yet (only referred to from reference cycles).
+   */
+  private static List<BioPAXElement> order(final Model l2) {
+    final Set<BioPAXElement> referred = identitySet();
+    for (BioPAXElement e : l2.getObjects())
+      referred.addAll(children(e));
+    final List<BioPAXElement> roots = new ArrayList<BioPAXElement>();
+    for (BioPAXElement e : l2.getObjects())
+      if (!referred.contains(e))
+        roots.add(e);
+    referred.clear();
+    roots.addAll(l2.getObjects()); //the leftovers (already visited ones are skipped)
+
+    final List<BioPAXElement> order = new ArrayList<BioPAXElement>(l2.getObjects().size());
+    final Set<BioPAXElement> visited = identitySet();
+    final Deque<Iterator<BioPAXElement>> path = new ArrayDeque<Iterator<BioPAXElement>>();
+    final Deque<BioPAXElement> parents = new ArrayDeque<BioPAXElement>();
+    for (BioPAXElement root : roots) {
+      if (!visited.add(root))
+        continue;
+      parents.push(root);
+      path.push(children(root).iterator());
+      while (!path.isEmpty()) {
+        final Iterator<BioPAXElement> it = path.peek();
+        if (it.hasNext()) {
+          final BioPAXElement child = it.next();
+          if (l2.contains(child) && visited.add(child)) {
+            parents.push(child);
+            path.push(children(child).iterator());
+          }
+        } else {
+          path.pop();
+          order.add(parents.pop());
+        }
+      }
+    }
+    return order;
+  }
+
+  // the values of the object's object properties
+  private static List<BioPAXElement> children(BioPAXElement e) {
+    final List<BioPAXElement> children = new ArrayList<BioPAXElement>();
+    for (PropertyEditor editor : EDITOR_MAP.getEditorsOf(e))
+      if (editor instanceof ObjectPropertyEditor)
+        for (Object v : editor.getValueFromBean(e))
+          if (v instanceof BioPAXElement)
+            children.add((BioPAXElement) v);
+    return children;
+  }
+
+  private static Set<BioPAXElement> identitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<BioPAXElement, Boolean>());
+  }
+}
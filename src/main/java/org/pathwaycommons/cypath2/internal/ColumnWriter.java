@@ -0,0 +1,194 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.*;
+
+import java.util.*;
+
+/**
+ * Bulk (columnar) network attributes writer.
+ * <p>
+ * Unlike {@link Attributes#set(CyNetwork, CyIdentifiable, String, Object, Class)},
+ * which gets the row, table and column (and creates the column if needed) for every value,
+ * this one buffers the values per table and column (row index and value arrays) while mapping;
+ * then {@link #flush()} creates every missing column once and writes the values
+ * column by column, in one go, and flushes the Cytoscape payload events.
+ * Only this last flush gives the listeners (table browser, views, etc.) one RowsSetEvent batch
+ * per table: any event fired while writing (e.g., a column created) makes Cytoscape deliver
+ * the values set so far as well, so there can be several batches (still far fewer than
+ * when the values are set cell by cell during the mapping).
+ * Not thread-safe (it's for the single thread that populates the network).
+ *
+ * @author rodche
+ */
+final class ColumnWriter {
+  private final CyNetwork network;
+
+  // by table kind (entry type and table name, e.g., "node/HIDDEN_ATTRS")
+  private final Map<String, TableBuffer> tables;
+
+  private long rowsSet;
+  private int columnsCreated;
+
+  ColumnWriter(CyNetwork network) {
+    this.network = network;
+    this.tables = new LinkedHashMap<String, TableBuffer>();
+  }
+
+  /**
+   * Buffers the node attribute values (default and hidden).
+   *
+   * @param entry  node
+   * @param values attribute values
+   */
+  void add(CyIdentifiable entry, NodeAttributes values) {
+    for (Map.Entry<String, Object> e : values.getValues().entrySet())
+      add(entry, CyNetwork.DEFAULT_ATTRS, e.getKey(), e.getValue());
+    for (Map.Entry<String, Object> e : values.getHiddenValues().entrySet())
+      add(entry, CyNetwork.HIDDEN_ATTRS, e.getKey(), e.getValue());
+  }
+
+  /**
+   * Buffers the default table value.
+   *
+   * @param entry  node, edge or network
+   * @param column column name
+   * @param value  String or List of String (null is ignored)
+   */
+  void add(CyIdentifiable entry, String column, Object value) {
+    add(entry, CyNetwork.DEFAULT_ATTRS, column, value);
+  }
+
+  /**
+   * Buffers the value.
+   *
+   * @param entry     node, edge or network
+   * @param tableName table namespace, e.g., CyNetwork.HIDDEN_ATTRS
+   * @param column    column name
+   * @param value     String or List of String (null is ignored)
+   */
+  void add(CyIdentifiable entry, String tableName, String column, Object value) {
+    if (value == null)
+      return;
+    final String key = kind(entry) + "/" + tableName;
+    TableBuffer table = tables.get(key);
+    if (table == null) {
+      table = new TableBuffer(tableName);
+      tables.put(key, table);
+    }
+    table.add(entry, column, value);
+  }
+
+  /**
+   * Creates the missing columns and writes all the buffered values to the network tables;
+   * then clears the buffers.
+   */
+  void flush() {
+    for (TableBuffer table : tables.values())
+      table.flush();
+    tables.clear();
+
+    final CyEventHelper eventHelper = (App.cyServices != null) ? App.cyServices.eventHelper : null;
+    if (eventHelper != null)
+      eventHelper.flushPayloadEvents();
+  }
+
+  /**
+   * @return number of values written so far
+   */
+  long getRowsSet() {
+    return rowsSet;
+  }
+
+  /**
+   * @return number of columns created so far
+   */
+  int getColumnsCreated() {
+    return columnsCreated;
+  }
+
+  private static String kind(CyIdentifiable entry) {
+    if (entry instanceof CyNode)
+      return "node";
+    else if (entry instanceof CyEdge)
+      return "edge";
+    else
+      return "network";
+  }
+
+  private final class TableBuffer {
+    final String tableName;
+    final Map<CyIdentifiable, Integer> index = new IdentityHashMap<CyIdentifiable, Integer>();
+    final List<CyRow> rows = new ArrayList<CyRow>();
+    final Map<String, ColumnBuffer> columns = new LinkedHashMap<String, ColumnBuffer>();
+    CyTable table;
+
+    TableBuffer(String tableName) {
+      this.tableName = tableName;
+    }
+
+    void add(CyIdentifiable entry, String column, Object value) {
+      Integer row = index.get(entry);
+      if (row == null) {
+        final CyRow cyRow = network.getRow(entry, tableName);
+        if (table == null)
+          table = cyRow.getTable();
+        row = rows.size();
+        rows.add(cyRow);
+        index.put(entry, row);
+      }
+      ColumnBuffer buffer = columns.get(column);
+      if (buffer == null) {
+        buffer = new ColumnBuffer(column);
+        columns.put(column, buffer);
+      }
+      buffer.add(row, value);
+    }
+
+    void flush() {
+      for (ColumnBuffer column : columns.values()) {
+        if (table.getColumn(column.name) == null) {
+          if (column.list) {
+            table.createListColumn(column.name, String.class, false);
+          } else {
+            table.createColumn(column.name, String.class, false);
+          }
+          columnsCreated++;
+        }
+        for (int i = 0; i < column.size; i++)
+          rows.get(column.rows[i]).set(column.name, column.values[i]);
+        rowsSet += column.size;
+      }
+    }
+  }
+
+  private static final class ColumnBuffer {
+    final String name;
+    boolean list;
+    int[] rows = new int[16];
+    Object[] values = new Object[16];
+    int size;
+
+    ColumnBuffer(String name) {
+      this.name = name;
+    }
+
+    void add(int row, Object value) {
+      if (size == 0) {
+        if (value instanceof List) {
+          list = true;
+        } else if (value instanceof Collection) {
+          throw new IllegalArgumentException("Attribute value is a Collection and not List: "
+            + value.getClass().getSimpleName());
+        }
+      }
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      rows[size] = row;
+      values[size] = value;
+      size++;
+    }
+  }
+}
@@ -1,49 +1,163 @@
 package org.pathwaycommons.cypath2.internal;
 
+import org.biopax.paxtools.pattern.miner.SIFInteraction;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
 import org.cytoscape.model.CyTable;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Creates the network nodes and edges from the custom (extended) SIF rows:
+ * URI1, interaction_type, URI2, data_sources, PMIDs, pathway_names
+ * (tab-separated; the last three columns - semicolon-separated values; other columns are ignored),
+ * or from the binary interactions the SIF text is made of.
+ *
  * Created by rodche on 2015-10-19.
  */
 public class CustomSifParser {
+  static final String[] LIST_COLUMNS = {"datasource", "publication", "pathway"};
+
   private final CyNetwork network;
-  private Map<Object, CyNode> nMap;
+  // URI (also the node name) -> node
+  private final Map<String, CyNode> nMap;
+  // repeated interaction types, data sources, pathway names, etc.
+  private final StringPool stringPool = new StringPool();
+  private final RowScanner scanner = new RowScanner();
+  // dictionary-encodes the list columns (null - plain lists)
+  private final SifDictionary dictionary;
+  private long rows;
+
+  public CustomSifParser(final CyNetwork network) {
+    this(network, false);
+  }
 
-  public CustomSifParser(final CyNetwork network, final CyServices serviceRegistrar) {
-    this.nMap = new HashMap<Object, CyNode>();
+  /**
+   * Constructor.
+   *
+   * @param network     network to add the nodes and edges to
+   * @param encodeLists whether to store the datasource, publication and pathway edge lists
+   *                    dictionary-encoded (see {@link SifDictionary}; then call {@link #finish()})
+   */
+  public CustomSifParser(final CyNetwork network, boolean encodeLists) {
+    this.nMap = new HashMap<String, CyNode>();
     this.network = network;
+    // create the edge list columns once
+    if (encodeLists) {
+      dictionary = new SifDictionary(LIST_COLUMNS);
+      dictionary.createColumns(network);
+    } else {
+      dictionary = null;
+      final CyTable table = network.getDefaultEdgeTable();
+      for (String column : LIST_COLUMNS)
+        if (table.getColumn(column) == null)
+          table.createListColumn(column, String.class, false);
+    }
   }
 
-  public void parse(final String row) {
-    String[] parts = row.split("\\t", -1); //allow empty tokens
+  /**
+   * Saves the dictionaries of the encoded edge lists to the network (if any);
+   * call after all the rows or interactions were added.
+   */
+  public void finish() {
+    if (dictionary != null)
+      dictionary.writeTo(network);
+  }
 
-    if (parts == null || parts.length < 6)
+  public void parse(final String row) {
+    for (int i = 0; i < row.length(); i++)
+      if (row.charAt(i) != '\r')
+        scanner.accept(row.charAt(i));
+    if (!scanner.endRow())
       throw new RuntimeException("Bad SIF entry: " + row);
+  }
+
+  /**
+   * Parses all the SIF rows (lines) from the reader, char by char, and adds the edges.
+   *
+   * @param reader SIF data (not closed here)
+   * @return number of rows added
+   * @throws IOException when the data cannot be read
+   */
+  public long parse(final Reader reader) throws IOException {
+    final long start = rows;
+    final char[] buf = new char[1 << 16];
+    long line = 1;
+    int n;
+    while ((n = reader.read(buf)) != -1) {
+      for (int i = 0; i < n; i++) {
+        final char ch = buf[i];
+        if (ch == '\n') {
+          if (!scanner.endRow())
+            throw new RuntimeException("Bad SIF entry at line " + line);
+          line++;
+        } else if (ch != '\r') {
+          scanner.accept(ch);
+        }
+      }
+    }
+    if (!scanner.endRow()) //the last line without EOL
+      throw new RuntimeException("Bad SIF entry at line " + line);
+    return rows - start;
+  }
 
-    final CyNode source = createNode(parts[0]);
-    final String interactionType = parts[1];
-    final CyNode target = createNode(parts[2]);
+  /**
+   * @return number of rows (interactions) added so far
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * Adds the binary interaction (as found by the SIF searcher) to the network
+   * the same way as its custom SIF text line (see {@link BioPaxMapper#convertToCustomSIF})
+   * would be, but without formatting and parsing the text.
+   *
+   * @param inter binary interaction
+   */
+  public void add(final SIFInteraction inter) {
+    addEdge(inter.sourceID, stringPool.intern(inter.type.getTag()), inter.targetID,
+      list(inter.getDataSources()), list(inter.getPublicationIDs(true)), list(inter.getPathwayNames()));
+  }
+
+  private void addEdge(final String sourceUri, final String interactionType, final String targetUri,
+                       final List<String> datasources, final List<String> publications,
+                       final List<String> pathways) {
+    final CyNode source = createNode(sourceUri);
+    final CyNode target = createNode(targetUri);
 
     final CyEdge edge = network.addEdge(source, target, true);
-    network.getRow(edge).set(CyEdge.INTERACTION, interactionType);
-    String edgeName = network.getRow(source).get(CyNetwork.NAME, String.class) +
-      " (" + interactionType + ") " + network.getRow(target).get(CyNetwork.NAME, String.class);
-    network.getRow(edge).set(CyNetwork.NAME, edgeName);
-
-    // add edge attributes
-    if (edge != null) {
-      addEdgeAttributes(edge, "datasource", parts[3]);
-      addEdgeAttributes(edge, "publication", parts[4]);
-      addEdgeAttributes(edge, "pathway", parts[5]);
+    final CyRow row = network.getRow(edge);
+    row.set(CyEdge.INTERACTION, interactionType);
+    row.set(CyNetwork.NAME, sourceUri + " (" + interactionType + ") " + targetUri);
+
+    // add edge attributes (the columns exist)
+    if (dictionary != null) {
+      dictionary.set(row, 0, datasources);
+      dictionary.set(row, 1, publications);
+      dictionary.set(row, 2, pathways);
+    } else {
+      row.set(LIST_COLUMNS[0], datasources);
+      row.set(LIST_COLUMNS[1], publications);
+      row.set(LIST_COLUMNS[2], pathways);
     }
+    rows++;
+  }
+
+  private List<String> list(final Collection<String> values) {
+    final List<String> list = new ArrayList<String>((values == null) ? 0 : values.size());
+    if (values != null)
+      for (String value : values)
+        list.add(stringPool.intern(value));
+    return list;
   }
 
   private CyNode createNode(final String uri) {
@@ -51,18 +165,67 @@ public class CustomSifParser {
     if (node == null) {
       // Node does not exist yet, create it
       node = network.addNode();
-      network.getRow(node).set("name", uri);
-      nMap.put(uri, network.getNode(node.getSUID()));
+      network.getRow(node).set(CyNetwork.NAME, uri);
+      nMap.put(uri, node);
     }
     return node;
   }
 
-  private void addEdgeAttributes(final CyEdge element, final String column, final String entry) {
-    final CyTable table = network.getRow(element).getTable();
-    if (table.getColumn(column) == null)
-      table.createListColumn(column, String.class, false);
-    List<String> value = Arrays.asList(entry.split(";"));
-    network.getRow(element).set(column, value);
-  }
+  /*
+   * Splits a row into the columns and list values as the chars come in,
+   * reusing one buffer for all the tokens.
+   */
+  private final class RowScanner {
+    private final StringBuilder token = new StringBuilder(256);
+    private final String[] head = new String[3];
+    private final List<List<String>> lists = new ArrayList<List<String>>(3);
+    private int column;
+    private boolean empty = true;
+
+    RowScanner() {
+      for (int i = 0; i < 3; i++)
+        lists.add(new ArrayList<String>());
+    }
 
+    void accept(final char ch) {
+      empty = false;
+      if (ch == '\t') {
+        endToken();
+        column++;
+      } else if (ch == ';' && column >= 3) {
+        endToken();
+      } else if (column < 6) {
+        token.append(ch);
+      }
+    }
+
+    /*
+     * Adds the edge; returns false if the row is bad (less than six columns);
+     * blank rows are skipped.
+     */
+    boolean endRow() {
+      if (empty)
+        return true;
+      endToken();
+      final boolean ok = column >= 5;
+      if (ok)
+        addEdge(head[0], head[1], head[2], new ArrayList<String>(lists.get(0)),
+          new ArrayList<String>(lists.get(1)), new ArrayList<String>(lists.get(2)));
+      for (List<String> list : lists)
+        list.clear();
+      column = 0;
+      empty = true;
+      return ok;
+    }
+
+    private void endToken() {
+      if (column < 3) {
+        // URIs are not repeated much, unlike interaction types
+        head[column] = (column == 1) ? stringPool.intern(token.toString()) : token.toString();
+      } else if (column < 6 && token.length() > 0) {
+        lists.get(column - 3).add(stringPool.intern(token.toString()));
+      }
+      token.setLength(0);
+    }
+  }
 }
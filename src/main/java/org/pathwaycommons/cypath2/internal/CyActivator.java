@@ -7,9 +7,11 @@ import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CyAction;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.application.swing.search.NetworkSearchTaskFactory;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.io.util.StreamUtil;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
 import org.cytoscape.property.CyProperty;
 import org.cytoscape.service.util.AbstractCyActivator;
@@ -101,6 +103,8 @@ public final class CyActivator extends AbstractCyActivator {
 
     StreamUtil streamUtil = getService(bc, StreamUtil.class);
 
+    CyEventHelper cyEventHelper = getService(bc, CyEventHelper.class);
+
     // keep all the service references in one place -
     App.cyServices = new CyServices(
       cySwingApplication,
@@ -121,7 +125,8 @@ public final class CyActivator extends AbstractCyActivator {
       visualStyleFactory,
       discreteMappingFunctionFactory,
       passthroughMappingFunctionFactory,
-      streamUtil);
+      streamUtil,
+      cyEventHelper);
 
     // Create/init a cpath2 client instance
     String cPath2Url = cyProperties.getProperties().getProperty(App.PROP_CPATH2_SERVER_URL);
@@ -133,6 +138,11 @@ public final class CyActivator extends AbstractCyActivator {
     }
     cyProperties.getProperties().setProperty(App.PROP_CPATH2_SERVER_URL, App.client.getEndPointURL());
 
+    // local cache of query results (BioPAX)
+    App.resultCache = ResultCache.create();
+    // models normalized for the BioPAX to SIF conversion, by query (this session)
+    App.normalizedModelCache = NormalizedModelCache.create();
+
     // get the app description from the resource file
     final Properties props = new Properties();
     try {
@@ -175,6 +185,46 @@ public final class CyActivator extends AbstractCyActivator {
     // register the service
     registerService(bc, showAboutDialogAction, CyAction.class, new Properties());
 
+    // Create "Import BioPAX Files..." menu item and action (batch import)
+    Map<String, String> importFilesActionProps = new HashMap<String, String>();
+    importFilesActionProps.put(ID, "importBioPaxFilesAction");
+    importFilesActionProps.put(TITLE, "Import BioPAX Files...");
+    importFilesActionProps.put(PREFERRED_MENU, APPS_MENU + ".PathwayCommons");
+    importFilesActionProps.put(MENU_GRAVITY, "3.0");
+    importFilesActionProps.put(IN_TOOL_BAR, "false");
+    importFilesActionProps.put(IN_MENU_BAR, "true");
+    importFilesActionProps.put(TOOLTIP, "Import several BioPAX files at once");
+    ImportFilesAction importFilesAction = new ImportFilesAction(importFilesActionProps);
+    // register the service
+    registerService(bc, importFilesAction, CyAction.class, new Properties());
+
+    // Create "Materialize All BioPAX Attributes" menu item and action (for the lazy node attributes networks)
+    Map<String, String> materializeActionProps = new HashMap<String, String>();
+    materializeActionProps.put(ID, "materializeBioPaxAttributesAction");
+    materializeActionProps.put(TITLE, "Materialize All BioPAX Attributes");
+    materializeActionProps.put(PREFERRED_MENU, APPS_MENU + ".PathwayCommons");
+    materializeActionProps.put(MENU_GRAVITY, "4.0");
+    materializeActionProps.put(IN_TOOL_BAR, "false");
+    materializeActionProps.put(IN_MENU_BAR, "true");
+    materializeActionProps.put(TOOLTIP, "Create all the node attributes of the current (lazy) BioPAX network, " +
+      "or the edge attributes of the SIF network with encoded edge lists");
+    MaterializeAttributesAction materializeAction = new MaterializeAttributesAction(materializeActionProps);
+    // register the service
+    registerService(bc, materializeAction, CyAction.class, new Properties());
+
+    // Create "Query Results Cache..." menu item and action (cache hits/misses, size; clear)
+    Map<String, String> cacheInfoActionProps = new HashMap<String, String>();
+    cacheInfoActionProps.put(ID, "showCyPathwayCommonsCacheInfoAction");
+    cacheInfoActionProps.put(TITLE, "Query Results Cache...");
+    cacheInfoActionProps.put(PREFERRED_MENU, APPS_MENU + ".PathwayCommons");
+    cacheInfoActionProps.put(MENU_GRAVITY, "5.0");
+    cacheInfoActionProps.put(IN_TOOL_BAR, "false");
+    cacheInfoActionProps.put(IN_MENU_BAR, "true");
+    cacheInfoActionProps.put(TOOLTIP, "Show the local query results cache statistics, or clear the cache");
+    ShowCacheInfoAction cacheInfoAction = new ShowCacheInfoAction(cacheInfoActionProps);
+    // register the service
+    registerService(bc, cacheInfoAction, CyAction.class, new Properties());
+
     // create a context menu (using a task factory, for this uses tunables and can be used by Cy3 scripts, headless too)
     final NodeViewTaskFactory expandNodeContextMenuFactory = new ExpandNetworkContextMenuFactory();
     final Properties nodeProp = new Properties();
@@ -188,6 +238,9 @@ public final class CyActivator extends AbstractCyActivator {
     final EastCytoPanelComponent cytoPanelComponent = new EastCytoPanelComponent();
     registerAllServices(bc, cytoPanelComponent);
 
+    // deletes the BioPAX model snapshots (temporary files) of the destroyed lazy attributes networks
+    registerService(bc, new ModelRegistry.Cleaner(), NetworkAboutToBeDestroyedListener.class, new Properties());
+
     // Register: WebServiceClient, WebServiceGUIClient, SearchWebServiceClient,..
     registerAllServices(bc, app);
 
@@ -197,5 +250,12 @@ public final class CyActivator extends AbstractCyActivator {
     registerAllServices(bc, networkSearchTaskFactory);
   }
 
+  @Override
+  public void shutDown() {
+    // save the query results cache index (the LRU order changed by the cache hits)
+    if (App.resultCache != null)
+      App.resultCache.close();
+  }
+
 }
 
@@ -2,6 +2,7 @@ package org.pathwaycommons.cypath2.internal;
 
 import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.io.util.StreamUtil;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
@@ -43,6 +44,7 @@ final class CyServices {
   final VisualMappingFunctionFactory discreteMappingFunctionFactory;
   final VisualMappingFunctionFactory passthroughMappingFunctionFactory;
   final StreamUtil streamUtil;
+  final CyEventHelper eventHelper;
 
   public CyServices(CySwingApplication cySwingApplication,
                     TaskManager taskManager, OpenBrowser openBrowser,
@@ -60,7 +62,8 @@ final class CyServices {
                     VisualStyleFactory visualStyleFactory,
                     VisualMappingFunctionFactory discreteMappingFunctionFactory,
                     VisualMappingFunctionFactory passthroughMappingFunctionFactory,
-                    StreamUtil streamUtil
+                    StreamUtil streamUtil,
+                    CyEventHelper eventHelper
   ) {
     this.cySwingApplication = cySwingApplication;
     this.taskManager = taskManager;
@@ -82,6 +85,7 @@ final class CyServices {
     this.discreteMappingFunctionFactory = discreteMappingFunctionFactory;
     this.passthroughMappingFunctionFactory = passthroughMappingFunctionFactory;
     this.streamUtil = streamUtil;
+    this.eventHelper = eventHelper;
   }
 
 }
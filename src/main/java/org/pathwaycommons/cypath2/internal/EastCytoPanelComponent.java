@@ -4,8 +4,11 @@ import org.cytoscape.application.swing.CytoPanel;
 import org.cytoscape.application.swing.CytoPanelComponent;
 import org.cytoscape.application.swing.CytoPanelName;
 import org.cytoscape.application.swing.CytoPanelState;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.events.RowSetRecord;
 import org.cytoscape.model.events.RowsSetEvent;
 import org.cytoscape.model.events.RowsSetListener;
 import org.cytoscape.view.model.CyNetworkView;
@@ -131,6 +134,24 @@ public class EastCytoPanelComponent implements CytoPanelComponent, RowsSetListen
     final CyNetwork network = view.getModel();
     if (BioPaxUtil.isFromBiopax(network)) {
 
+      if (network.getDefaultEdgeTable().equals(e.getSource())) {
+        // derive the plain list attributes of the just selected edges (dictionary-encoded SIF network);
+        // only the changed rows are checked, not all the edges
+        if (e.containsColumn(CyNetwork.SELECTED) && SifDictionary.isEncoded(network)) {
+          final Collection<CyEdge> selectedEdges = new ArrayList<>();
+          for (RowSetRecord record : e.getColumnRecords(CyNetwork.SELECTED)) {
+            if (!Boolean.TRUE.equals(record.getValue()))
+              continue;
+            final CyEdge edge = network.getEdge(record.getRow().get(CyIdentifiable.SUID, Long.class));
+            if (edge != null)
+              selectedEdges.add(edge);
+          }
+          if (!selectedEdges.isEmpty())
+            App.cachedThreadPool.execute(() -> SifDictionary.decode(network, selectedEdges));
+        }
+        return;
+      }
+
       if (!network.getDefaultNodeTable().equals(e.getSource()))
         return;
 
@@ -143,8 +164,15 @@ public class EastCytoPanelComponent implements CytoPanelComponent, RowsSetListen
       }
 
       if (!selected.isEmpty()) {
-        // Show the details
-        updateNodeDetails(network, selected);
+        // Show the details (after all the attributes are created, if it's a lazy network)
+        if (ModelRegistry.isLazy(network)) {
+          App.cachedThreadPool.execute(() -> {
+            ModelRegistry.materialize(network, selected);
+            updateNodeDetails(network, selected);
+          });
+        } else {
+          updateNodeDetails(network, selected);
+        }
         // If legend is showing, show details
         showDetails();
 
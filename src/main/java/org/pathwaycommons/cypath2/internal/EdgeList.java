@@ -0,0 +1,62 @@
+package org.pathwaycommons.cypath2.internal;
+
+import java.util.Arrays;
+
+/**
+ * Directed edges to create, collected before adding them to a network:
+ * source and target node (dense) indices, interaction type,
+ * and whether the edge also gets the "source type target" name.
+ *
+ * @author rodche
+ */
+final class EdgeList {
+
+  private int[] sources;
+  private int[] targets;
+  private String[] types;
+  private boolean[] named;
+  private int size;
+
+  EdgeList(int capacity) {
+    capacity = Math.max(capacity, 16);
+    this.sources = new int[capacity];
+    this.targets = new int[capacity];
+    this.types = new String[capacity];
+    this.named = new boolean[capacity];
+  }
+
+  void add(int source, int target, String type, boolean withName) {
+    if (size == sources.length) {
+      final int capacity = size * 2;
+      sources = Arrays.copyOf(sources, capacity);
+      targets = Arrays.copyOf(targets, capacity);
+      types = Arrays.copyOf(types, capacity);
+      named = Arrays.copyOf(named, capacity);
+    }
+    sources[size] = source;
+    targets[size] = target;
+    types[size] = type;
+    named[size] = withName;
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int source(int i) {
+    return sources[i];
+  }
+
+  int target(int i) {
+    return targets[i];
+  }
+
+  String type(int i) {
+    return types[i];
+  }
+
+  boolean named(int i) {
+    return named[i];
+  }
+}
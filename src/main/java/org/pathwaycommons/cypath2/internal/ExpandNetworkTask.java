@@ -73,15 +73,22 @@ public class ExpandNetworkTask extends AbstractTask implements Task {
 
     //execute, create a new network and view (if any data will be returned from the server)
     taskMonitor.setStatusMessage("Executing " + graphType + " query (in Pathway Commons)");
+    final GraphType kind = ("NEIGHBORHOOD".equals(graphType)) ? GraphType.NEIGHBORHOOD : GraphType.PATHSBETWEEN;
+    final Direction direction = ("NEIGHBORHOOD".equals(graphType)) ? Direction.UNDIRECTED : null;
     final CPathGraphQuery graphQ = App.client.createGraphQuery()
-      .kind(("NEIGHBORHOOD".equals(graphType)) ? GraphType.NEIGHBORHOOD : GraphType.PATHSBETWEEN)
+      .kind(kind)
       .sources(values)
       .datasourceFilter(App.options.selectedDatasources())
-      .direction(("NEIGHBORHOOD".equals(graphType)) ? Direction.UNDIRECTED : null)
+      .direction(direction)
       //.limit(1) TODO set limit via tunables (default is 1)
       .organismFilter(App.options.selectedOrganisms());
+    final ResultCache.Key key = ResultCache.Key.graph(kind)
+      .sources(values)
+      .datasourceFilter(App.options.selectedDatasources())
+      .direction(direction)
+      .organismFilter(App.options.selectedOrganisms());
     App.cyServices.taskManager.execute(new TaskIterator(
-      new NetworkAndViewTask(graphQ, null)
+      new NetworkAndViewTask(graphQ, null, values, key)
     ));
 
     taskMonitor.setStatusMessage("Done");
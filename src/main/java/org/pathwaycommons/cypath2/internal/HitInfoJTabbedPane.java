@@ -66,7 +66,7 @@ final class HitInfoJTabbedPane extends JTabbedPane {
           String uri = hyperlinkEvent.getURL().toString();
           final CPathGetQuery query = App.client.createGetQuery().sources(Collections.singleton(uri));
           App.cyServices.taskManager.execute(new TaskIterator(
-            new NetworkAndViewTask(query, current.toString())));
+            new NetworkAndViewTask(query, current.toString(), ResultCache.Key.get(Collections.singleton(uri)))));
         }
       }
     });
@@ -166,13 +166,17 @@ final class HitInfoJTabbedPane extends JTabbedPane {
               .organismFilter(App.options.selectedOrganisms())
               .sources(Collections.singleton(uri))
               .kind(GraphType.NEIGHBORHOOD);
+            final ResultCache.Key key = ResultCache.Key.graph(GraphType.NEIGHBORHOOD)
+              .datasourceFilter(App.options.selectedDatasources())
+              .organismFilter(App.options.selectedOrganisms())
+              .sources(Collections.singleton(uri));
             App.cyServices.taskManager.execute(new TaskIterator(
-              new NetworkAndViewTask(graphQuery, currentItem.toString())));
+              new NetworkAndViewTask(graphQuery, currentItem.toString(), Collections.singleton(uri), key)));
           } else { // for a biological process (pathway or interaction), use '/get' command
             final CPathGetQuery getQuery = App.client.createGetQuery()
               .sources(Collections.singleton(uri));
             App.cyServices.taskManager.execute(new TaskIterator(
-              new NetworkAndViewTask(getQuery, currentItem.toString())));
+              new NetworkAndViewTask(getQuery, currentItem.toString(), ResultCache.Key.get(Collections.singleton(uri)))));
           }
         }
       }
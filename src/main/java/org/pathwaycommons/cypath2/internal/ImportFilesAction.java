@@ -0,0 +1,46 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.work.TaskIterator;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Opens a file chooser to select several BioPAX files
+ * and imports them all at once (see {@link BatchImportTask}).
+ *
+ * @author rodche
+ */
+final class ImportFilesAction extends AbstractCyAction {
+
+  private static final long serialVersionUID = 4630185512086227831L;
+
+  private File lastDir;
+
+  public ImportFilesAction(Map<String, String> configProps) {
+    super(configProps, App.cyServices.applicationManager, App.cyServices.networkViewManager);
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent ae) {
+    final JFileChooser chooser = new JFileChooser(lastDir);
+    chooser.setDialogTitle("Import BioPAX files");
+    chooser.setMultiSelectionEnabled(true);
+    chooser.setFileFilter(new FileNameExtensionFilter("BioPAX (*.owl, *.xml, *.rdf, *.gz)",
+      "owl", "xml", "rdf", "gz"));
+    if (chooser.showOpenDialog(App.cyServices.cySwingApplication.getJFrame()) != JFileChooser.APPROVE_OPTION)
+      return;
+
+    final File[] files = chooser.getSelectedFiles();
+    if (files == null || files.length == 0)
+      return;
+    lastDir = chooser.getCurrentDirectory();
+
+    App.cyServices.taskManager.execute(new TaskIterator(new BatchImportTask(Arrays.asList(files))));
+  }
+}
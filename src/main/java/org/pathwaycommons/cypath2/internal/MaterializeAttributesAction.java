@@ -0,0 +1,91 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates all the node attributes of the current network
+ * imported with the lazy node attributes option (see {@link ModelRegistry}),
+ * or the plain edge list attributes of the SIF network with the encoded ones (see {@link SifDictionary}).
+ *
+ * @author rodche
+ */
+final class MaterializeAttributesAction extends AbstractCyAction {
+
+  private static final long serialVersionUID = -2719834750148733532L;
+
+  public MaterializeAttributesAction(Map<String, String> configProps) {
+    super(configProps, App.cyServices.applicationManager, App.cyServices.networkViewManager);
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent ae) {
+    final CyNetwork network = App.cyServices.applicationManager.getCurrentNetwork();
+    if (SifDictionary.isEncoded(network)) {
+      App.cyServices.taskManager.execute(new TaskIterator(new DecodeEdgeListsTask(network)));
+      return;
+    }
+    if (!ModelRegistry.isLazy(network)) {
+      JOptionPane.showMessageDialog(App.cyServices.cySwingApplication.getJFrame(),
+        "The current network was not imported from BioPAX with the lazy node attributes " +
+          "or encoded edge lists option (or its BioPAX model is no longer available).");
+      return;
+    }
+
+    App.cyServices.taskManager.execute(new TaskIterator(new MaterializeAttributesTask(network)));
+  }
+
+  private static final class MaterializeAttributesTask extends AbstractTask {
+    // nodes per table update
+    private static final int BATCH_SIZE = 1000;
+
+    private final CyNetwork network;
+
+    MaterializeAttributesTask(CyNetwork network) {
+      this.network = network;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+      taskMonitor.setTitle("Materialize BioPAX attributes");
+      taskMonitor.setStatusMessage("Creating all the node attributes from the BioPAX model...");
+      final List<CyNode> nodes = network.getNodeList();
+      for (int i = 0; i < nodes.size() && !cancelled; i += BATCH_SIZE) {
+        ModelRegistry.materialize(network, nodes.subList(i, Math.min(i + BATCH_SIZE, nodes.size())));
+        taskMonitor.setProgress((double) Math.min(i + BATCH_SIZE, nodes.size()) / nodes.size());
+      }
+    }
+  }
+
+  private static final class DecodeEdgeListsTask extends AbstractTask {
+    // edges per table update
+    private static final int BATCH_SIZE = 10000;
+
+    private final CyNetwork network;
+
+    DecodeEdgeListsTask(CyNetwork network) {
+      this.network = network;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+      taskMonitor.setTitle("Decode SIF edge attributes");
+      taskMonitor.setStatusMessage("Creating the datasource, publication and pathway edge attributes...");
+      final List<CyEdge> edges = network.getEdgeList();
+      for (int i = 0; i < edges.size() && !cancelled; i += BATCH_SIZE) {
+        SifDictionary.decode(network, edges.subList(i, Math.min(i + BATCH_SIZE, edges.size())));
+        taskMonitor.setProgress((double) Math.min(i + BATCH_SIZE, edges.size()) / edges.size());
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * BioPAX model (post-parse) processing pipeline of named stages.
+ * <p>
+ * Each stage is timed and can be skipped (by name, e.g., using the
+ * "cypath2.pipeline.skip" Cytoscape property - a comma-separated list).
+ * Consecutive per-element stages over the same BioPAX type are fused
+ * into one sweep over the model objects; the sweep runs in parallel
+ * (over partitions of the objects) when all the fused stages can run concurrently.
+ *
+ * @author rodche
+ */
+final class ModelPipeline {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelPipeline.class);
+
+  static final String PROP_SKIP_STAGES = "cypath2.pipeline.skip";
+
+  /**
+   * Whole model stage.
+   */
+  interface ModelStage {
+    /**
+     * @param model BioPAX model
+     * @return the same or a new (e.g., converted) model
+     */
+    Model apply(Model model);
+  }
+
+  /**
+   * Per-element stage.
+   *
+   * @param <T> BioPAX type
+   */
+  interface ElementStage<T extends BioPAXElement> {
+    void apply(T element, Model model);
+  }
+
+  private final String name;
+  private final List<Stage> stages;
+  private final Set<String> skipped;
+  private final Map<String, Long> timings;
+
+  /**
+   * Constructor.
+   *
+   * @param name pipeline name (for logging)
+   */
+  ModelPipeline(String name) {
+    this.name = name;
+    this.stages = new ArrayList<Stage>();
+    this.skipped = new HashSet<String>(defaultSkippedStages());
+    this.timings = new LinkedHashMap<String, Long>();
+  }
+
+  /**
+   * Adds the whole model stage.
+   *
+   * @param stageName name
+   * @param stage     stage
+   * @return this pipeline
+   */
+  ModelPipeline add(String stageName, ModelStage stage) {
+    stages.add(new Stage(stageName, null, false, stage, null));
+    return this;
+  }
+
+  /**
+   * Adds the per-element stage.
+   *
+   * @param stageName  name
+   * @param type       BioPAX type of the elements to process
+   * @param concurrent whether the stage is safe to run in parallel
+   *                   (changes nothing but the element it is given)
+   * @param stage      stage
+   * @param <T>        BioPAX type
+   * @return this pipeline
+   */
+  <T extends BioPAXElement> ModelPipeline add(String stageName, Class<T> type,
+                                              boolean concurrent, ElementStage<T> stage) {
+    stages.add(new Stage(stageName, type, concurrent, null, stage));
+    return this;
+  }
+
+  /**
+   * Skips the stages.
+   *
+   * @param stageNames names
+   * @return this pipeline
+   */
+  ModelPipeline skip(String... stageNames) {
+    skipped.addAll(Arrays.asList(stageNames));
+    return this;
+  }
+
+  /**
+   * Runs the pipeline.
+   *
+   * @param model BioPAX model
+   * @return processed model (can be a new one)
+   */
+  Model run(Model model) {
+    timings.clear();
+    int i = 0;
+    while (model != null && i < stages.size()) {
+      final Stage stage = stages.get(i++);
+      if (skipped.contains(stage.name)) {
+        LOGGER.info(name + ": skipped " + stage.name);
+        continue;
+      }
+      final long start = System.currentTimeMillis();
+      if (stage.modelStage != null) {
+        model = stage.modelStage.apply(model);
+        timings.put(stage.name, System.currentTimeMillis() - start);
+      } else {
+        // fuse the following element stages over the same type into one sweep
+        final List<Stage> sweep = new ArrayList<Stage>();
+        sweep.add(stage);
+        boolean concurrent = stage.concurrent;
+        while (i < stages.size() && stages.get(i).type == stage.type) {
+          Stage next = stages.get(i++);
+          if (!skipped.contains(next.name)) {
+            sweep.add(next);
+            concurrent &= next.concurrent;
+          }
+        }
+        sweep(model, stage.type, sweep, concurrent);
+        final StringBuilder sb = new StringBuilder();
+        for (Stage s : sweep)
+          sb.append((sb.length() > 0) ? "+" : "").append(s.name);
+        timings.put(sb.toString(), System.currentTimeMillis() - start);
+      }
+    }
+    LOGGER.info(name + " pipeline stages (ms): " + timings);
+    return model;
+  }
+
+  /**
+   * @return stage (or fused stages) name to time (ms) map of the last run
+   */
+  Map<String, Long> getTimings() {
+    return Collections.unmodifiableMap(timings);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static void sweep(final Model model, Class<? extends BioPAXElement> type,
+                            final List<Stage> sweep, boolean concurrent) {
+    // copy: stages may add objects to the model
+    final List<BioPAXElement> elements = new ArrayList<BioPAXElement>(model.getObjects(type));
+    if (concurrent) {
+      elements.parallelStream().forEach(e -> {
+        for (Stage s : sweep)
+          ((ElementStage) s.elementStage).apply(e, model);
+      });
+    } else {
+      for (BioPAXElement e : elements)
+        for (Stage s : sweep)
+          ((ElementStage) s.elementStage).apply(e, model);
+    }
+  }
+
+  private static Collection<String> defaultSkippedStages() {
+    String value = App.getProperty(PROP_SKIP_STAGES, null);
+    return (value == null) ? Collections.<String>emptySet() : Arrays.asList(value.split("\\s*,\\s*"));
+  }
+
+  private static final class Stage {
+    final String name;
+    final Class<? extends BioPAXElement> type;
+    final boolean concurrent;
+    final ModelStage modelStage;
+    final ElementStage<?> elementStage;
+
+    Stage(String name, Class<? extends BioPAXElement> type, boolean concurrent,
+          ModelStage modelStage, ElementStage<?> elementStage) {
+      this.name = name;
+      this.type = type;
+      this.concurrent = concurrent;
+      this.modelStage = modelStage;
+      this.elementStage = elementStage;
+    }
+  }
+}
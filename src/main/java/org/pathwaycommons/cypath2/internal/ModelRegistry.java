@@ -0,0 +1,204 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * The BioPAX models of the networks imported with lazy node attributes
+ * (only the key columns were created, see {@link BioPaxMapper#setLazyAttributes(boolean)}),
+ * to fill in the rest of the node attributes on demand.
+ * <p>
+ * Networks are weakly referenced (an entry goes away with its network);
+ * a model, once spilled to a temporary file (binary {@link ModelSnapshot}, in background),
+ * is only softly referenced and gets re-loaded from the file if the JVM needed the memory.
+ * The models do not survive the Cytoscape session; the file is deleted
+ * when the network gets destroyed (see {@link Cleaner}).
+ *
+ * @author rodche
+ */
+final class ModelRegistry {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelRegistry.class);
+
+  private static final Map<CyNetwork, Entry> ENTRIES = new WeakHashMap<CyNetwork, Entry>();
+
+  private ModelRegistry() {
+  }
+
+  /**
+   * Keeps the BioPAX model of the network (and starts spilling it to disk).
+   *
+   * @param network network created from the model with lazy node attributes
+   * @param model   BioPAX model
+   */
+  static void register(CyNetwork network, Model model) {
+    final Entry entry = new Entry(model);
+    synchronized (ENTRIES) {
+      ENTRIES.put(network, entry);
+    }
+    App.cachedThreadPool.execute(entry::spill);
+  }
+
+  /**
+   * @param network network
+   * @return true when the network was imported with lazy node attributes (and its model is here)
+   */
+  static boolean isLazy(CyNetwork network) {
+    return entry(network) != null;
+  }
+
+  /**
+   * Creates all the node attributes (from the BioPAX model) of the nodes
+   * that only have the key ones yet.
+   *
+   * @param network network
+   * @param nodes   nodes
+   * @return number of nodes updated
+   */
+  static int materialize(CyNetwork network, Collection<CyNode> nodes) {
+    final Entry entry = entry(network);
+    if (entry == null)
+      return 0;
+
+    synchronized (entry) {
+      final Model model;
+      try {
+        model = entry.model();
+      } catch (IOException e) {
+        LOGGER.error("Failed to re-load the BioPAX model of the network", e);
+        return 0;
+      }
+
+      final ColumnWriter columnWriter = new ColumnWriter(network);
+      int count = 0;
+      for (CyNode node : nodes) {
+        if (!entry.materialized.add(node.getSUID()))
+          continue;
+        final String uri = network.getRow(node).get(BioPaxMapper.BIOPAX_URI, String.class);
+        final BioPAXElement bpe = (uri != null) ? model.getByID(uri) : null;
+        if (bpe != null) {
+          columnWriter.add(node, BioPaxMapper.extractAttributes(bpe, null));
+          count++;
+        }
+      }
+      columnWriter.flush();
+
+      if (LOGGER.isDebugEnabled())
+        LOGGER.debug("Materialized " + count + " nodes' attributes");
+      return count;
+    }
+  }
+
+  /**
+   * Forgets the network's model and deletes its temporary file.
+   *
+   * @param network network
+   */
+  static void unregister(CyNetwork network) {
+    final Entry entry;
+    synchronized (ENTRIES) {
+      entry = ENTRIES.remove(network);
+    }
+    if (entry != null)
+      entry.dispose();
+  }
+
+  private static Entry entry(CyNetwork network) {
+    if (network == null)
+      return null;
+    synchronized (ENTRIES) {
+      return ENTRIES.get(network);
+    }
+  }
+
+  private static final class Entry {
+    // strongly referenced until spilled to the file
+    private Model model;
+    private SoftReference<Model> modelRef;
+    private File file;
+    // SUIDs of the nodes that have got all the attributes
+    final Set<Long> materialized = new HashSet<Long>();
+    private boolean disposed;
+
+    Entry(Model model) {
+      this.model = model;
+    }
+
+    // writes the snapshot without holding the lock (materialize can use the model meanwhile), then publishes it
+    void spill() {
+      final Model m;
+      synchronized (this) {
+        m = model;
+      }
+      if (m == null)
+        return;
+
+      File f = null;
+      try {
+        f = File.createTempFile("cypath2_model", ".bpxs");
+        f.deleteOnExit();
+        ModelSnapshot.write(m, f);
+      } catch (IOException e) {
+        LOGGER.warn("Failed to spill the BioPAX model to disk (keeping it in memory)", e);
+        if (f != null)
+          f.delete();
+        return;
+      }
+
+      synchronized (this) {
+        if (disposed) {
+          f.delete();
+          return;
+        }
+        file = f;
+        modelRef = new SoftReference<Model>(m);
+        model = null;
+      }
+    }
+
+    synchronized void dispose() {
+      disposed = true;
+      model = null;
+      modelRef = null;
+      if (file != null) {
+        if (!file.delete())
+          LOGGER.warn("Failed to delete " + file);
+        file = null;
+      }
+    }
+
+    synchronized Model model() throws IOException {
+      if (disposed)
+        throw new IOException("The network's BioPAX model was discarded");
+      if (model != null)
+        return model;
+      Model m = modelRef.get();
+      if (m == null) {
+        LOGGER.info("Re-loading the BioPAX model from " + file);
+        m = ModelSnapshot.read(file);
+        modelRef = new SoftReference<Model>(m);
+      }
+      return m;
+    }
+  }
+
+  /**
+   * Deletes the model (and its temporary file) of the network that is about to be destroyed.
+   */
+  static final class Cleaner implements NetworkAboutToBeDestroyedListener {
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+      unregister(e.getNetwork());
+    }
+  }
+}
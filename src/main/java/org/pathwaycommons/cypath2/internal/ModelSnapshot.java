@@ -0,0 +1,260 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.EditorMap;
+import org.biopax.paxtools.controller.ObjectPropertyEditor;
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Compact binary snapshot of a BioPAX Level3 model,
+ * which is much faster to load than to parse the RDF/XML (OWL).
+ * <p>
+ * Format (big-endian): magic, version, the string table (URIs, names, all other
+ * property values), xml:base, the class table (class name and property names,
+ * sorted, per BioPAX class), objects (class index, URI), and then, for each object,
+ * the values of its class's properties in the class table order - value count followed by
+ * either string indices (data properties) or object indices (object properties).
+ *
+ * @author rodche
+ */
+final class ModelSnapshot {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelSnapshot.class);
+
+  private static final int MAGIC = 0x42505853; //"BPXS"
+  private static final int VERSION = 1;
+
+  private static final EditorMap EDITOR_MAP = SimpleEditorMap.L3;
+
+  private ModelSnapshot() {
+  }
+
+  /**
+   * Writes the BioPAX L3 model to the snapshot file.
+   *
+   * @param model BioPAX Level3 model
+   * @param file  output file
+   * @throws IOException when there's an I/O problem
+   */
+  static void write(Model model, File file) throws IOException {
+    final long start = System.currentTimeMillis();
+    final List<BioPAXElement> objects = new ArrayList<BioPAXElement>(model.getObjects());
+    final Map<BioPAXElement, Integer> objectIds = new IdentityHashMap<BioPAXElement, Integer>(objects.size());
+    for (BioPAXElement e : objects)
+      objectIds.put(e, objectIds.size());
+
+    final StringTable strings = new StringTable();
+    final Map<Class<? extends BioPAXElement>, Integer> classIds = new LinkedHashMap<>();
+    final List<PropertyEditor[]> classEditors = new ArrayList<PropertyEditor[]>();
+
+    // first, make the string and class tables and serialize objects' properties to a buffer
+    final ByteArrayOutputStream propBytes = new ByteArrayOutputStream(objects.size() * 32);
+    final DataOutputStream props = new DataOutputStream(propBytes);
+    final int[] objectClasses = new int[objects.size()];
+    final int[] objectUris = new int[objects.size()];
+    for (int i = 0; i < objects.size(); i++) {
+      final BioPAXElement bpe = objects.get(i);
+      Integer classId = classIds.get(bpe.getModelInterface());
+      if (classId == null) {
+        classId = classIds.size();
+        classIds.put(bpe.getModelInterface(), classId);
+        classEditors.add(editorsOf(bpe));
+      }
+      objectClasses[i] = classId;
+      objectUris[i] = strings.index(bpe.getUri());
+      for (PropertyEditor editor : classEditors.get(classId)) {
+        final Set<?> values = editor.getValueFromBean(bpe);
+        final List<Integer> refs = new ArrayList<Integer>(values.size());
+        for (Object value : values) {
+          if (value == null || editor.isUnknown(value))
+            continue;
+          if (editor instanceof ObjectPropertyEditor) {
+            Integer id = objectIds.get(value);
+            if (id != null) //otherwise, it's not in the model (should not happen)
+              refs.add(id);
+          } else {
+            refs.add(strings.index((value instanceof Enum) ? ((Enum<?>) value).name() : value.toString()));
+          }
+        }
+        props.writeInt(refs.size());
+        for (int ref : refs)
+          props.writeInt(ref);
+      }
+    }
+    props.flush();
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      final int xmlBase = strings.index(model.getXmlBase()); //before writing the table
+      out.writeInt(strings.list.size());
+      for (String s : strings.list) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+      }
+      out.writeInt(xmlBase);
+      out.writeInt(classIds.size());
+      int c = 0;
+      for (Class<? extends BioPAXElement> type : classIds.keySet()) {
+        writeString(out, type.getName());
+        PropertyEditor[] editors = classEditors.get(c++);
+        out.writeInt(editors.length);
+        for (PropertyEditor editor : editors)
+          writeString(out, editor.getProperty());
+      }
+      out.writeInt(objects.size());
+      for (int i = 0; i < objects.size(); i++) {
+        out.writeInt(objectClasses[i]);
+        out.writeInt(objectUris[i]);
+      }
+      propBytes.writeTo(out);
+    }
+
+    LOGGER.info("Wrote " + objects.size() + " objects to " + file + " in "
+      + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * Loads the BioPAX L3 model from a snapshot file.
+   *
+   * @param file snapshot file
+   * @return new BioPAX model
+   * @throws IOException when the file cannot be read or it's not a valid snapshot
+   */
+  static Model read(File file) throws IOException {
+    final long start = System.currentTimeMillis();
+    if (file.length() > Integer.MAX_VALUE)
+      throw new IOException("Snapshot is too large: " + file);
+
+    // read into the heap rather than memory-map the file, for a mapped file stays open
+    // (cannot be deleted on Windows) until the buffer is garbage collected
+    final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+    try {
+      if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+        throw new IOException("Not a BioPAX snapshot (or unsupported version): " + file);
+
+      final String[] strings = new String[buf.getInt()];
+      for (int i = 0; i < strings.length; i++)
+        strings[i] = readString(buf);
+
+      final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+      final int xmlBase = buf.getInt();
+      if (xmlBase >= 0)
+        model.setXmlBase(strings[xmlBase]);
+
+      final int numClasses = buf.getInt();
+      final List<Class<? extends BioPAXElement>> classes = new ArrayList<>(numClasses);
+      final List<PropertyEditor[]> classEditors = new ArrayList<PropertyEditor[]>(numClasses);
+      for (int c = 0; c < numClasses; c++) {
+        final Class<? extends BioPAXElement> type = Class.forName(readString(buf), true,
+          BioPAXElement.class.getClassLoader()).asSubclass(BioPAXElement.class);
+        final PropertyEditor[] editors = new PropertyEditor[buf.getInt()];
+        for (int p = 0; p < editors.length; p++) {
+          String property = readString(buf);
+          editors[p] = EDITOR_MAP.getEditorForProperty(property, type);
+          if (editors[p] == null)
+            throw new IOException("Unknown property: " + property + " of " + type.getSimpleName());
+        }
+        classes.add(type);
+        classEditors.add(editors);
+      }
+
+      final int numObjects = buf.getInt();
+      final BioPAXElement[] objects = new BioPAXElement[numObjects];
+      final int[] objectClasses = new int[numObjects];
+      for (int i = 0; i < numObjects; i++) {
+        objectClasses[i] = buf.getInt();
+        objects[i] = model.addNew(classes.get(objectClasses[i]), strings[buf.getInt()]);
+      }
+
+      for (int i = 0; i < numObjects; i++) {
+        final BioPAXElement bpe = objects[i];
+        for (PropertyEditor editor : classEditors.get(objectClasses[i])) {
+          final int n = buf.getInt();
+          for (int v = 0; v < n; v++) {
+            final int ref = buf.getInt();
+            if (editor instanceof ObjectPropertyEditor)
+              editor.setValueToBean(objects[ref], bpe);
+            else
+              editor.setValueToBean(parse(strings[ref], editor.getRange()), bpe);
+          }
+        }
+      }
+
+      LOGGER.info("Loaded " + numObjects + " objects from " + file + " in "
+        + (System.currentTimeMillis() - start) + " ms");
+
+      return model;
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Failed loading the snapshot: " + file, e);
+    }
+  }
+
+  //all the property editors (except for inverse ones) of the element's type, sorted by property name
+  private static PropertyEditor[] editorsOf(BioPAXElement bpe) {
+    final List<PropertyEditor> editors = new ArrayList<PropertyEditor>(EDITOR_MAP.getEditorsOf(bpe));
+    Collections.sort(editors, (a, b) -> a.getProperty().compareTo(b.getProperty()));
+    return editors.toArray(new PropertyEditor[editors.size()]);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object parse(String value, Class<?> range) {
+    if (range == String.class)
+      return value;
+    if (range.isEnum())
+      return Enum.valueOf((Class<Enum>) range, value);
+    if (range == Float.class || range == float.class)
+      return Float.valueOf(value);
+    if (range == Double.class || range == double.class)
+      return Double.valueOf(value);
+    if (range == Integer.class || range == int.class)
+      return Integer.valueOf(value);
+    if (range == Boolean.class || range == boolean.class)
+      return Boolean.valueOf(value);
+    return value;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(ByteBuffer buf) {
+    final byte[] b = new byte[buf.getInt()];
+    buf.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  // unique strings in the order of appearance
+  private static final class StringTable {
+    final Map<String, Integer> index = new HashMap<String, Integer>();
+    final List<String> list = new ArrayList<String>();
+
+    int index(String s) {
+      if (s == null)
+        return -1;
+      Integer i = index.get(s);
+      if (i == null) {
+        i = list.size();
+        index.put(s, i);
+        list.add(s);
+      }
+      return i;
+    }
+  }
+}
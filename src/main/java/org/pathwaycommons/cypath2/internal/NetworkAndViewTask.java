@@ -8,14 +8,16 @@ import org.cytoscape.view.layout.CyLayoutAlgorithm;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.vizmap.VisualStyle;
 import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.TaskMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.*;
+import java.security.DigestInputStream;
+import java.util.Collection;
+import java.util.concurrent.*;
 
 /**
  * A Task that gets data from the cPath2 server and
@@ -29,6 +31,14 @@ class NetworkAndViewTask extends AbstractTask {
 
   private final CPathQuery<Model> cPathQuery;
   private final String networkName;
+  // queried entities (URIs, ids), for the compact mapping of large results
+  private final Collection<String> seeds;
+  // normalized query, to cache the result (can be null - do not cache)
+  private final ResultCache.Key cacheKey;
+  // de-duplicates strings of the model and then of the network attributes
+  private final StringPool stringPool = new StringPool();
+  // hash of the BioPAX data when these are parsed here (not by the cPath2 client), to cache the SIF-normalized model
+  private String dataKey;
 
   /**
    * Constructor
@@ -36,10 +46,28 @@ class NetworkAndViewTask extends AbstractTask {
    *
    * @param cPathQuery  query
    * @param networkName network name
+   * @param cacheKey    the query's normalized form (made from the same parameters), or null - do not cache
    */
-  public NetworkAndViewTask(CPathQuery<Model> cPathQuery, String networkName) {
+  public NetworkAndViewTask(CPathQuery<Model> cPathQuery, String networkName, ResultCache.Key cacheKey) {
+    this(cPathQuery, networkName, null, cacheKey);
+  }
+
+  /**
+   * Constructor
+   * (for graph queries).
+   *
+   * @param cPathQuery  query
+   * @param networkName network name
+   * @param seeds       the queried entities (URIs or identifiers), to map only their interactions
+   *                    when the result is too large (see {@link BioPaxReaderTask#setSeeds(Collection)})
+   * @param cacheKey    the query's normalized form (made from the same parameters), or null - do not cache
+   */
+  public NetworkAndViewTask(CPathQuery<Model> cPathQuery, String networkName, Collection<String> seeds,
+                            ResultCache.Key cacheKey) {
     this.cPathQuery = cPathQuery;
     this.networkName = networkName;
+    this.seeds = seeds;
+    this.cacheKey = cacheKey;
   }
 
   public void run(TaskMonitor taskMonitor) throws Exception {
@@ -52,10 +80,25 @@ class NetworkAndViewTask extends AbstractTask {
       taskMonitor.setProgress(0);
       taskMonitor.setStatusMessage("Getting the network data from server...");
 
-      String data = null;
+      // the cPath2 client parses the response body while it is being downloaded
+      // (no intermediate String, temporary file or second parsing)
+      final long start = System.currentTimeMillis();
+      Model model = null;
       if (cPathQuery != null) {
         try {
-          data = cPathQuery.stringResult(null); //default format is BioPAX
+          // repeat queries are served from the local cache (no network round trip):
+          // the reader task loads the model snapshot or, if it fails, parses the BioPAX file
+          final String key = (App.resultCache != null && cacheKey != null) ? cacheKey.toString() : null;
+          final File cached = (key != null) ? App.resultCache.get(key) : null;
+          if (cached != null) {
+            taskMonitor.setStatusMessage("Found the network data in the local cache");
+            map(new BioPaxReaderTask(App.resultCache.snapshot(cached), cached, stringPool, null));
+            return;
+          }
+          model = fetchModel(taskMonitor);
+          if (cancelled) return;
+          if (key != null && model != null && !model.getObjects().isEmpty())
+            App.resultCache.put(key, model); //writes the snapshot now, and the BioPAX file - in the background
         } catch (CPathException e) {
           LOGGER.warn("cPath2 query failed", e);
           SwingUtilities.invokeLater(new Runnable() {
@@ -67,66 +110,177 @@ class NetworkAndViewTask extends AbstractTask {
         }
       }
 
-      if (data == null || data.isEmpty()) {
+      if (model == null || model.getObjects().isEmpty()) {
         taskMonitor.setStatusMessage("No data returned from the server.");
         return;
       }
 
-      // done.
-      taskMonitor.setProgress(0.4);
-      if (cancelled) {
-        return;
+      if (LOGGER.isInfoEnabled()) {
+        Runtime rt = Runtime.getRuntime();
+        LOGGER.info("Got and parsed " + model.getObjects().size() + " BioPAX elements in "
+          + (System.currentTimeMillis() - start) + " ms; used heap: "
+          + (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024) + " MB");
       }
 
-      File tmpFile;
-      //always BioPAX
-      tmpFile = File.createTempFile("tmp_cypath2", ".owl");
-      tmpFile.deleteOnExit();
-      FileWriter writer = new FileWriter(tmpFile);
-      writer.write(data);
-      writer.close();
-
+      // done.
       taskMonitor.setProgress(0.5);
       if (cancelled) return;
 
       taskMonitor.setStatusMessage("Processing the BioPAX data...");
-      final BioPaxReaderTask reader = new BioPaxReaderTask(new FileInputStream(tmpFile), null);
-      //the first task (the BioPAX reader) creates a network; the second one registers it and adds the view:
-      insertTasksAfterCurrentTask(reader, new AbstractTask() {
-        @Override
-        public void run(TaskMonitor taskMonitor) throws Exception {
-          taskMonitor.setTitle("PathwayCommons, after BioPAX read");
-          final CyNetwork cyNetwork = reader.getNetworks()[0];
-
-          //check / set the network name attr. (otherwise, it won't be shown in the panel - a bug?..)
-          String name = cyNetwork.getRow(cyNetwork).get(CyNetwork.NAME, String.class);
-          if (name == null || name.trim().length() == 0) {
-            name = networkName;
-            if (name == null)
-              name = "Network from PathwayCommons (name is missing)";
-            Attributes.set(cyNetwork, cyNetwork, CyNetwork.NAME, name, String.class);
+      map(new BioPaxReaderTask(model, stringPool, null));
+    } finally {
+      taskMonitor.setStatusMessage("Done");
+      taskMonitor.setProgress(1.0);
+    }
+  }
+
+  /*
+   * Adds the reader and then registration tasks.
+   */
+  private void map(final BioPaxReaderTask reader) {
+    reader.setSeeds(seeds);
+    reader.setProgressive(true);
+    reader.setDataKey((dataKey != null) ? dataKey : (cacheKey != null) ? cacheKey.toString() : null);
+    //the first task (the BioPAX reader) creates a network; the second one registers it and adds the view:
+    insertTasksAfterCurrentTask(reader, new AbstractTask() {
+      @Override
+      public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("PathwayCommons, after BioPAX read");
+        final CyNetwork cyNetwork = reader.getNetworks()[0];
+
+        if (App.cyServices.networkManager.networkExists(cyNetwork.getSUID())) {
+          // it was registered, with a view, while being mapped; lay out the complete network (once)
+          final TaskIterator layouts = new TaskIterator();
+          for (CyNetworkView view : App.cyServices.networkViewManager.getNetworkViews(cyNetwork)) {
+            if (applyStyle(view))
+              layouts.append(createLayoutTasks(view));
           }
-          App.cyServices.networkManager.addNetwork(cyNetwork);
+          insertTasksAfterCurrentTask(layouts);
+          taskMonitor.setStatusMessage("Updated the view");
+          return;
+        }
+
+        //check / set the network name attr. (otherwise, it won't be shown in the panel - a bug?..)
+        String name = cyNetwork.getRow(cyNetwork).get(CyNetwork.NAME, String.class);
+        if (name == null || name.trim().length() == 0) {
+          name = networkName;
+          if (name == null)
+            name = "Network from PathwayCommons (name is missing)";
+          Attributes.set(cyNetwork, cyNetwork, CyNetwork.NAME, name, String.class);
+        }
+        App.cyServices.networkManager.addNetwork(cyNetwork);
 
-          taskMonitor.setStatusMessage("Registered the network");
+        taskMonitor.setStatusMessage("Registered the network");
 
-          // create and register the view
-          final CyNetworkView view = reader.buildCyNetworkView(cyNetwork);
-          applyStyleAndLayout(view);
+        // create and register the view
+        final CyNetworkView view = reader.buildCyNetworkView(cyNetwork);
+        if (applyStyle(view))
+          insertTasksAfterCurrentTask(createLayoutTasks(view));
 
-          taskMonitor.setStatusMessage("Created and registered the view");
+        taskMonitor.setStatusMessage("Created and registered the view");
+      }
+    });
+  }
+
+  /*
+   * Executes the query and gets the BioPAX model, which the cPath2 client
+   * builds directly from the response stream (woodstox StAX parser requires the class loader hack).
+   * Falls back to getting the result as String (and parsing it here) if the client fails to convert the response
+   * (but not when there are no data).
+   * The query runs in another thread, which is interrupted and abandoned once this task is cancelled
+   * (then returns null).
+   */
+  private Model fetchModel(final TaskMonitor taskMonitor) throws CPathException {
+    final Future<Object> future = App.cachedThreadPool.submit(new Callable<Object>() {
+      @Override
+      public Object call() throws CPathException {
+        final Object[] result = new Object[1];
+        final CPathException[] error = new CPathException[1];
+        final boolean[] failed = new boolean[1];
+        ClassLoaderHack.runWithHack(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              result[0] = cPathQuery.result();
+            } catch (CPathException e) {
+              error[0] = e;
+            } catch (RuntimeException e) {
+              LOGGER.warn("cPath2 client failed to build the model from the response stream; " +
+                "will get the result as string", e);
+              failed[0] = true;
+            }
+          }
+        }, com.ctc.wstx.stax.WstxInputFactory.class);
+
+        if (error[0] != null)
+          throw error[0];
+
+        if (failed[0]) {
+          final String data = cPathQuery.stringResult(null); //default format is BioPAX
+          if (data != null && !data.isEmpty())
+            result[0] = data;
         }
-      });
-    } finally {
-      taskMonitor.setStatusMessage("Done");
-      taskMonitor.setProgress(1.0);
+
+        return result[0];
+      }
+    });
+
+    final Object result;
+    try {
+      result = await(future);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof CPathException)
+        throw (CPathException) e.getCause();
+      throw new RuntimeException(e.getCause());
     }
+
+    if (result == null) //cancelled or no data
+      return null;
+
+    if (result instanceof String) {
+      // encoded as it's parsed (no byte array copy); the length in chars is close enough for the progress
+      final String data = (String) result;
+      try {
+        final DigestInputStream in = NormalizedModelCache.digesting(new ProgressInputStream(
+          new ReaderInputStream(new StringReader(data)), data.length(), taskMonitor, 0.0, 0.5, () -> cancelled));
+        final Model model = BioPaxMapper.read(in, stringPool);
+        dataKey = NormalizedModelCache.key(in);
+        return model;
+      } catch (IOException e) {
+        if (cancelled)
+          return null;
+        throw new RuntimeException(e);
+      }
+    }
+
+    return BioPaxMapper.prepare((Model) result, stringPool);
   }
 
+  /*
+   * Waits for the result, checking whether this task is cancelled;
+   * if so, interrupts the worker thread and returns null.
+   */
+  private <T> T await(Future<T> future) throws ExecutionException {
+    while (!cancelled) {
+      try {
+        return future.get(200, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        //check the cancelled flag and continue waiting
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    future.cancel(true);
+    LOGGER.info("Cancelled the cPath2 query");
+    return null;
+  }
 
-  //sets a custom style and layout for just created view
-  private void applyStyleAndLayout(final CyNetworkView view) {
-    // apply the PC style and layout to a BioPAX-origin view;
+  /*
+   * Sets and applies the PC style to a BioPAX-origin view (in the EDT);
+   * returns false when it is not such a view.
+   */
+  static boolean applyStyle(final CyNetworkView view) {
     final CyNetwork cyNetwork = view.getModel();
 
     VisualStyle style = null;
@@ -136,26 +290,30 @@ class NetworkAndViewTask extends AbstractTask {
     else if (BiopaxVisualStyleUtil.BINARY_SIF_VISUAL_STYLE.equals(kind))
       style = App.visualStyleUtil.getBinarySifVisualStyle();
 
-    //apply style and layout
-    if (style != null) {
-      final VisualStyle vs = style;
-      //apply style and layout
-      SwingUtilities.invokeLater(new Runnable() {
-        public void run() {
-          // do layout
-          CyLayoutAlgorithm layout = App.cyServices.layoutManager.getLayout("force-directed");
-          if (layout == null) {
-            layout = App.cyServices.layoutManager.getDefaultLayout();
-            LOGGER.warn("'force-directed' layout not found; will use the default one.");
-          }
-          App.cyServices.taskManager.execute(layout.createTaskIterator(view,
-            layout.getDefaultLayoutContext(), CyLayoutAlgorithm.ALL_NODE_VIEWS, ""));
+    if (style == null)
+      return false;
 
-          App.cyServices.mappingManager.setVisualStyle(vs, view);
-          vs.apply(view);
-          view.updateView();
-        }
-      });
+    final VisualStyle vs = style;
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        App.cyServices.mappingManager.setVisualStyle(vs, view);
+        vs.apply(view);
+        view.updateView();
+      }
+    });
+    return true;
+  }
+
+  /*
+   * The force-directed (or default) layout tasks for the view;
+   * e.g., to insert after the current task, so that several views are laid out one after another.
+   */
+  static TaskIterator createLayoutTasks(CyNetworkView view) {
+    CyLayoutAlgorithm layout = App.cyServices.layoutManager.getLayout("force-directed");
+    if (layout == null) {
+      layout = App.cyServices.layoutManager.getDefaultLayout();
+      LOGGER.warn("'force-directed' layout not found; will use the default one.");
     }
+    return layout.createTaskIterator(view, layout.getDefaultLayoutContext(), CyLayoutAlgorithm.ALL_NODE_VIEWS, "");
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node attribute values (String or List of String) extracted from a BioPAX element,
+ * by column name, for the default and hidden node tables; nothing is written
+ * to the network until {@link #writeTo(CyNetwork, CyIdentifiable)}
+ * or {@link ColumnWriter#add(CyIdentifiable, NodeAttributes)}.
+ * <p>
+ * Instances are immutable (made with a {@link Builder}), so they can be extracted
+ * in parallel and then applied to the network tables by a single thread.
+ *
+ * @author rodche
+ */
+final class NodeAttributes {
+
+  private final Map<String, Object> values;
+  private final Map<String, Object> hiddenValues;
+
+  private NodeAttributes(Map<String, Object> values, Map<String, Object> hiddenValues) {
+    this.values = Collections.unmodifiableMap(values);
+    this.hiddenValues = Collections.unmodifiableMap(hiddenValues);
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @param column column name
+   * @return default table column value or null
+   */
+  Object get(String column) {
+    return values.get(column);
+  }
+
+  /**
+   * @return default table values by column name
+   */
+  Map<String, Object> getValues() {
+    return values;
+  }
+
+  /**
+   * @return hidden table values by column name
+   */
+  Map<String, Object> getHiddenValues() {
+    return hiddenValues;
+  }
+
+  /**
+   * Writes the values to the network (cell by cell).
+   *
+   * @param network network
+   * @param entry   node
+   */
+  void writeTo(CyNetwork network, CyIdentifiable entry) {
+    for (Map.Entry<String, Object> e : values.entrySet())
+      Attributes.set(network, entry, e.getKey(), e.getValue(), String.class);
+    for (Map.Entry<String, Object> e : hiddenValues.entrySet())
+      Attributes.set(network, entry, CyNetwork.HIDDEN_ATTRS, e.getKey(), e.getValue(), String.class);
+  }
+
+  /**
+   * Collects the values (not thread-safe; one per node).
+   */
+  static final class Builder {
+    private Map<String, Object> values = new LinkedHashMap<String, Object>();
+    private Map<String, Object> hiddenValues = new LinkedHashMap<String, Object>();
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the default table column value (null value is ignored).
+     *
+     * @param column column name
+     * @param value  String or List of String
+     */
+    void set(String column, Object value) {
+      if (value != null)
+        values.put(column, value);
+    }
+
+    /**
+     * Sets the hidden table column value (null value is ignored).
+     *
+     * @param column column name
+     * @param value  String or List of String
+     */
+    void setHidden(String column, Object value) {
+      if (value != null)
+        hiddenValues.put(column, value);
+    }
+
+    /**
+     * @param column column name
+     * @return default table column value or null
+     */
+    Object get(String column) {
+      return values.get(column);
+    }
+
+    /**
+     * @return the attributes (the builder cannot be used after this)
+     */
+    NodeAttributes build() {
+      final NodeAttributes attributes = new NodeAttributes(values, hiddenValues);
+      values = null;
+      hiddenValues = null;
+      return attributes;
+    }
+  }
+}
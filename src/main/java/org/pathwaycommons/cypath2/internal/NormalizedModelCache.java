@@ -0,0 +1,148 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded (LRU) cache of the BioPAX models normalized for the SIF conversion
+ * (see {@link BioPaxMapper#normalizeForSif(Model, String)}), as binary {@link ModelSnapshot} temporary files,
+ * keyed by what identifies the original data - the hash of the BioPAX data taken while they are read
+ * (see {@link #digesting(InputStream)}) or, when there were no such data (e.g., the cPath2 client built the model),
+ * the normalized query ({@link ResultCache.Key}) - so that converting the same data again skips straight
+ * to the SIF patterns search.
+ * The files do not survive the Cytoscape session (the same query's data are not expected to change
+ * on the server meanwhile).
+ *
+ * @author rodche
+ */
+final class NormalizedModelCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NormalizedModelCache.class);
+
+  static final String PROP_SIZE = "cypath2.sif.cache.size";
+
+  private final int maxEntries;
+  // data key -> snapshot file; in the access (LRU) order
+  private final LinkedHashMap<String, File> files = new LinkedHashMap<String, File>(16, 0.75f, true);
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries max number of the cached models
+   */
+  NormalizedModelCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Creates the cache using the app properties (or defaults).
+   *
+   * @return new cache or null when it is disabled (size is 0)
+   */
+  static NormalizedModelCache create() {
+    final int size = (int) App.getLongProperty(PROP_SIZE, 4);
+    if (size <= 0) {
+      LOGGER.info("Normalized models cache is disabled");
+      return null;
+    }
+    return new NormalizedModelCache(size);
+  }
+
+  /**
+   * Loads the cached normalized model.
+   *
+   * @param key what identifies the original data
+   * @return new normalized model or null (not cached)
+   */
+  Model get(String key) {
+    final File file;
+    synchronized (this) {
+      file = files.get(key);
+    }
+    if (file == null)
+      return null;
+    try {
+      return ModelSnapshot.read(file);
+    } catch (IOException e) {
+      LOGGER.warn("Failed loading the normalized model " + key, e);
+      remove(key);
+      return null;
+    }
+  }
+
+  /**
+   * Saves the normalized model (can take a while; the model must not change meanwhile)
+   * and evicts the least recently used ones over the size limit.
+   *
+   * @param key        what identifies the original data
+   * @param normalized normalized model
+   */
+  void put(String key, Model normalized) {
+    final File file;
+    try {
+      file = File.createTempFile("cypath2_sif_model", ".bpxs");
+      file.deleteOnExit();
+      ModelSnapshot.write(normalized, file);
+    } catch (IOException e) {
+      LOGGER.warn("Failed caching the normalized model " + key, e);
+      return;
+    }
+    synchronized (this) {
+      final File old = files.put(key, file);
+      if (old != null)
+        old.delete();
+      final Iterator<Map.Entry<String, File>> it = files.entrySet().iterator();
+      while (files.size() > maxEntries && it.hasNext()) {
+        final Map.Entry<String, File> e = it.next(); //eldest first
+        it.remove();
+        e.getValue().delete();
+        LOGGER.debug("Evicted the normalized model " + e.getKey());
+      }
+    }
+  }
+
+  /**
+   * Wraps the BioPAX data input stream to hash the raw bytes while they are being read
+   * (no extra pass over the data).
+   *
+   * @param in input stream
+   * @return digest input stream (see {@link #key(DigestInputStream)})
+   */
+  static DigestInputStream digesting(InputStream in) {
+    try {
+      return new DigestInputStream(in, MessageDigest.getInstance("SHA-1"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Makes the data key from the hash of the bytes read so far
+   * (call once, after the data have been read).
+   *
+   * @param in digest input stream (see {@link #digesting(InputStream)})
+   * @return hex digest
+   */
+  static String key(DigestInputStream in) {
+    final StringBuilder sb = new StringBuilder();
+    for (byte b : in.getMessageDigest().digest())
+      sb.append(String.format("%02x", b));
+    return sb.toString();
+  }
+
+  private synchronized void remove(String key) {
+    final File file = files.remove(key);
+    if (file != null)
+      file.delete();
+  }
+}
@@ -0,0 +1,113 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.work.TaskMonitor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Input stream that counts the bytes read, reports the progress
+ * (bytes read vs. the content length or file size) to the task monitor,
+ * and aborts reading (and so the parsing) once the task is cancelled.
+ *
+ * @author rodche
+ */
+final class ProgressInputStream extends FilterInputStream {
+
+  private final long length;
+  private final TaskMonitor taskMonitor;
+  private final double from;
+  private final double to;
+  private final BooleanSupplier cancelled;
+
+  private volatile long count; //can be read by another thread (aggregate progress)
+  private long mark;
+  private int reported; //last reported progress, in per mille
+
+  /**
+   * Constructor.
+   *
+   * @param in          input stream
+   * @param length      total bytes expected, e.g., the Content-Length or file size (-1 when unknown)
+   * @param taskMonitor task monitor (can be null)
+   * @param from        progress value at the beginning of the stream
+   * @param to          progress value at the end of the stream
+   * @param cancelled   cancellation check (e.g., the task's cancelled flag)
+   */
+  ProgressInputStream(InputStream in, long length, TaskMonitor taskMonitor,
+                      double from, double to, BooleanSupplier cancelled) {
+    super(in);
+    this.length = length;
+    this.taskMonitor = taskMonitor;
+    this.from = from;
+    this.to = to;
+    this.cancelled = cancelled;
+    this.reported = -1;
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkCancelled();
+    int b = super.read();
+    if (b >= 0)
+      update(1);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkCancelled();
+    int n = super.read(b, off, len);
+    if (n > 0)
+      update(n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    checkCancelled();
+    long skipped = super.skip(n);
+    if (skipped > 0)
+      update(skipped);
+    return skipped;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    super.mark(readlimit);
+    mark = count;
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    super.reset();
+    count = mark;
+  }
+
+  /**
+   * @return the number of bytes read so far
+   */
+  long getCount() {
+    return count;
+  }
+
+  private void checkCancelled() throws InterruptedIOException {
+    if (cancelled != null && cancelled.getAsBoolean())
+      throw new InterruptedIOException("Cancelled after reading " + count + " bytes");
+  }
+
+  private void update(long n) {
+    count += n;
+    if (taskMonitor == null || length <= 0)
+      return;
+    // report only when it changes by 0.1% or more (the monitor updates the UI)
+    int permille = (int) Math.min(1000, count * 1000 / length);
+    if (permille != reported) {
+      reported = permille;
+      taskMonitor.setProgress(from + (to - from) * permille / 1000.0);
+    }
+  }
+}
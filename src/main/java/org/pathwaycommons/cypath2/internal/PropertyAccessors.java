@@ -0,0 +1,100 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.BioPAXElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of BioPAX property getters (method handles) by model interface and property name,
+ * e.g., (Protein, "feature") to Protein.getFeature(); the lookup (reflection) is done only once
+ * per interface and property, and the properties a type does not have are also remembered,
+ * so getting a value is just a map lookup and a direct call (no exceptions).
+ *
+ * @author rodche
+ */
+final class PropertyAccessors {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PropertyAccessors.class);
+
+  // the getter signature used to call any of them
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, BioPAXElement.class);
+
+  // a "no such property" marker (ConcurrentHashMap does not allow null values)
+  private static final MethodHandle NONE = MethodHandles.constant(Object.class, null);
+
+  private static final ConcurrentMap<Class<? extends BioPAXElement>, ConcurrentMap<String, MethodHandle>> ACCESSORS =
+    new ConcurrentHashMap<Class<? extends BioPAXElement>, ConcurrentMap<String, MethodHandle>>();
+
+  private PropertyAccessors() {
+  }
+
+  /**
+   * Whether the BioPAX type has the property.
+   *
+   * @param type     BioPAX model interface
+   * @param property BioPAX property name (Level3 or Level2 style, e.g. "CELLULAR-LOCATION")
+   * @return true if there's the getter
+   */
+  static boolean has(Class<? extends BioPAXElement> type, String property) {
+    return accessor(type, property) != NONE;
+  }
+
+  /**
+   * Gets the property value (or values collection) of the BioPAX element.
+   *
+   * @param bpe      BioPAX element
+   * @param property BioPAX property name
+   * @return the value, collection of values, or null (no such property or value)
+   */
+  static Object get(BioPAXElement bpe, String property) {
+    final MethodHandle getter = accessor(bpe.getModelInterface(), property);
+    if (getter == NONE)
+      return null;
+    try {
+      return (Object) getter.invokeExact(bpe);
+    } catch (Throwable e) { //should not happen (simple bean getters)
+      LOGGER.warn("Failed getting " + property + " of " + bpe.getUri(), e);
+      return null;
+    }
+  }
+
+  private static MethodHandle accessor(Class<? extends BioPAXElement> type, String property) {
+    ConcurrentMap<String, MethodHandle> getters = ACCESSORS.get(type);
+    if (getters == null) {
+      getters = new ConcurrentHashMap<String, MethodHandle>();
+      ConcurrentMap<String, MethodHandle> prev = ACCESSORS.putIfAbsent(type, getters);
+      if (prev != null)
+        getters = prev;
+    }
+    MethodHandle getter = getters.get(property);
+    if (getter == null) {
+      getter = lookup(type, property);
+      getters.putIfAbsent(property, getter);
+    }
+    return getter;
+  }
+
+  private static MethodHandle lookup(Class<? extends BioPAXElement> type, String property) {
+    final String name = "get" + property.substring(0, 1).toUpperCase()
+      + property.substring(1).replace('-', '_');
+    for (Method method : type.getMethods()) {
+      if (method.getName().equals(name) && method.getParameterCount() == 0) {
+        try {
+          return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+          LOGGER.warn("Cannot access " + type.getSimpleName() + "." + name, e);
+          return NONE;
+        }
+      }
+    }
+    if (LOGGER.isDebugEnabled())
+      LOGGER.debug("No property " + property + " in " + type.getSimpleName());
+    return NONE;
+  }
+}
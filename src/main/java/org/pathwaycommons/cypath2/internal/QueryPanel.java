@@ -196,7 +196,7 @@ final class QueryPanel extends JPanel {
         final CPathGetQuery getQ = App.client
           .createGetQuery().sources(srcs);
         App.cyServices.taskManager.execute(new TaskIterator(
-          new NetworkAndViewTask(getQ, null)
+          new NetworkAndViewTask(getQ, null, ResultCache.Key.get(srcs))
         ));
       } else {
         final CPathGraphQuery graphQ = App.client
@@ -207,8 +207,15 @@ final class QueryPanel extends JPanel {
           .direction(direction)
           //.limit(1) TODO set limit (optional; default is 1)
           .organismFilter(App.options.selectedOrganisms());
+        final ResultCache.Key key = ResultCache.Key.graph(graphType)
+          .sources(srcs).targets(tgts)
+          .datasourceFilter(App.options.selectedDatasources())
+          .direction(direction)
+          .organismFilter(App.options.selectedOrganisms());
+        final Set<String> seeds = new HashSet<String>(srcs);
+        seeds.addAll(tgts);
         App.cyServices.taskManager.execute(new TaskIterator(
-          new NetworkAndViewTask(graphQ, null)
+          new NetworkAndViewTask(graphQ, null, seeds, key)
         ));
       }
 
@@ -0,0 +1,87 @@
+package org.pathwaycommons.cypath2.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoded bytes of the characters from a reader, encoded as they are read
+ * (e.g., to parse a String without copying it all to a byte array first).
+ *
+ * @author rodche
+ */
+final class ReaderInputStream extends InputStream {
+
+  private final Reader reader;
+  private final CharsetEncoder encoder;
+  private final CharBuffer chars;
+  private final ByteBuffer bytes;
+  private boolean endOfInput;
+
+  /**
+   * Constructor.
+   *
+   * @param reader characters (closed with this stream)
+   */
+  ReaderInputStream(Reader reader) {
+    this.reader = reader;
+    this.encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.chars = CharBuffer.allocate(8192);
+    this.chars.flip(); //empty
+    this.bytes = ByteBuffer.allocate(16384);
+    this.bytes.flip(); //empty
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] b = new byte[1];
+    return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0)
+      return 0;
+    while (!bytes.hasRemaining()) {
+      if (!fill())
+        return -1;
+    }
+    final int n = Math.min(len, bytes.remaining());
+    bytes.get(b, off, n);
+    return n;
+  }
+
+  // encodes the next chars; returns false at the end (nothing left)
+  private boolean fill() throws IOException {
+    if (endOfInput && !chars.hasRemaining())
+      return false;
+    if (!endOfInput) {
+      chars.compact();
+      final int n = reader.read(chars);
+      chars.flip();
+      if (n == -1)
+        endOfInput = true;
+    }
+    bytes.clear();
+    final CoderResult result = encoder.encode(chars, bytes, endOfInput);
+    if (result.isError())
+      result.throwException();
+    if (endOfInput && !chars.hasRemaining())
+      encoder.flush(bytes);
+    bytes.flip();
+    return bytes.hasRemaining() || !endOfInput || chars.hasRemaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
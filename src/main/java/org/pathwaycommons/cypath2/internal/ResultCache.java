@@ -0,0 +1,435 @@
+package org.pathwaycommons.cypath2.internal;
+
+import cpath.client.CPathClient.Direction;
+import cpath.client.query.GraphType;
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent, size-bounded (LRU) local cache of the cPath2 query results
+ * (gzipped BioPAX files and binary model snapshots), keyed by the normalized query ({@link Key}).
+ * On a cache miss, the importing thread writes the model snapshot (before the model gets mapped),
+ * and the BioPAX file is written in the background.
+ * The index is saved when entries are added or removed, and on {@link #close()}
+ * (not on every hit; so the LRU order is lost if Cytoscape does not shut down normally).
+ *
+ * @author rodche
+ */
+final class ResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+
+  static final String PROP_CACHE_DIR = "cypath2.cache.dir";
+  static final String PROP_CACHE_SIZE_MB = "cypath2.cache.size.mb";
+  static final String PROP_CACHE_TTL_HOURS = "cypath2.cache.ttl.hours";
+
+  private static final String INDEX_FILE = "index.properties";
+  private static final String VERSION_KEY = "version";
+  private static final String BIOPAX_SUFFIX = ".owl.gz";
+  private static final String SNAPSHOT_SUFFIX = ".snap";
+
+  private final File dir;
+  private final long maxBytes;
+  private final long ttlMillis;
+  // file name (key hash) -> entry; in the access (LRU) order
+  private final LinkedHashMap<String, Entry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private String version;
+  private long totalBytes;
+  // the LRU order has changed since the index was saved
+  private boolean dirty;
+
+  /**
+   * Constructor.
+   *
+   * @param dir       cache directory (created if it does not exist)
+   * @param maxBytes  max total size of the cached files
+   * @param ttlMillis max age of an entry
+   */
+  ResultCache(File dir, long maxBytes, long ttlMillis) {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    dir.mkdirs();
+    load();
+  }
+
+  /**
+   * Creates the cache using the app properties (or defaults).
+   *
+   * @return new cache or null when it is disabled (size is 0)
+   */
+  static ResultCache create() {
+    final long sizeMb = App.getLongProperty(PROP_CACHE_SIZE_MB, 512);
+    final long ttlHours = App.getLongProperty(PROP_CACHE_TTL_HOURS, 168);
+    final String path = App.getProperty(PROP_CACHE_DIR, null);
+    final File dir = (path != null) ? new File(path)
+      : new File(System.getProperty("user.home"), "CytoscapeConfiguration/app-data/CyPath2/cache");
+    if (sizeMb <= 0) {
+      LOGGER.info("Query results cache is disabled");
+      return null;
+    }
+    LOGGER.info("Query results cache: " + dir + ", " + sizeMb + " MB, TTL " + ttlHours + " h");
+    return new ResultCache(dir, sizeMb * 1024 * 1024, Math.max(0, ttlHours) * 3600 * 1000);
+  }
+
+  /**
+   * Gets the cached BioPAX (gzipped) file.
+   *
+   * @param key normalized query
+   * @return file or null (not cached or expired)
+   */
+  synchronized File get(String key) {
+    final String name = fileName(key);
+    final Entry entry = entries.get(name);
+    final File file = new File(dir, name + BIOPAX_SUFFIX);
+    if (entry == null || !file.exists()) {
+      misses.incrementAndGet();
+      return null;
+    }
+    if (System.currentTimeMillis() - entry.created > ttlMillis) {
+      remove(name);
+      save();
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    dirty = true; //the LRU order has changed (saved later)
+    LOGGER.info("Cache hit: " + key + " (hits: " + hits + ", misses: " + misses + ")");
+    return file;
+  }
+
+  /**
+   * Saves the query result (BioPAX) to the cache
+   * and evicts the least recently used entries over the size limit.
+   * Only the binary model snapshot is written right away (the model can change after that);
+   * the BioPAX file is made from the snapshot, and the entry is added, in the background.
+   *
+   * @param key   normalized query
+   * @param model BioPAX model
+   */
+  void put(final String key, final Model model) {
+    final String name = fileName(key);
+    final File snapshot;
+    try {
+      snapshot = File.createTempFile(name, SNAPSHOT_SUFFIX + ".tmp", dir);
+      ModelSnapshot.write(model, snapshot);
+    } catch (Exception e) {
+      LOGGER.warn("Failed writing the model snapshot for " + key, e);
+      return;
+    }
+    App.cachedThreadPool.execute(new Runnable() {
+      @Override
+      public void run() {
+        store(key, name, snapshot);
+      }
+    });
+  }
+
+  //writes the BioPAX file from the snapshot, then adds the entry (the temporary files get renamed)
+  private void store(final String key, final String name, final File snapshot) {
+    File owl = null;
+    try {
+      final Model model = ModelSnapshot.read(snapshot);
+      owl = File.createTempFile(name, BIOPAX_SUFFIX + ".tmp", dir);
+      final OutputStream os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(owl)));
+      try {
+        ClassLoaderHack.runWithHack(new Runnable() {
+          @Override
+          public void run() {
+            new SimpleIOHandler(BioPAXLevel.L3).convertToOWL(model, os);
+          }
+        }, com.ctc.wstx.stax.WstxInputFactory.class);
+      } finally {
+        os.close();
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Failed caching the result of " + key, e);
+      snapshot.delete();
+      if (owl != null)
+        owl.delete();
+      return;
+    }
+
+    synchronized (this) {
+      remove(name);
+      final File file = new File(dir, name + BIOPAX_SUFFIX);
+      if (!owl.renameTo(file)) {
+        LOGGER.warn("Failed caching the result of " + key + " (cannot rename " + owl + ")");
+        owl.delete();
+        snapshot.delete();
+        return;
+      }
+      final File snap = new File(dir, name + SNAPSHOT_SUFFIX);
+      if (!snapshot.renameTo(snap))
+        snapshot.delete(); //the BioPAX file is enough
+      final Entry entry = new Entry(System.currentTimeMillis(), file.length() + snap.length());
+      entries.put(name, entry);
+      totalBytes += entry.size;
+      evict(name);
+      save();
+    }
+    LOGGER.debug("Cached the result of " + key);
+  }
+
+  /**
+   * Gets the binary model snapshot saved along with the cached BioPAX file.
+   *
+   * @param cached the cached BioPAX file, returned by {@link #get(String)}
+   * @return snapshot file or null (no snapshot)
+   */
+  File snapshot(File cached) {
+    String name = cached.getName();
+    File file = new File(cached.getParentFile(),
+      name.substring(0, name.length() - BIOPAX_SUFFIX.length()) + SNAPSHOT_SUFFIX);
+    return (file.exists()) ? file : null;
+  }
+
+  /**
+   * Removes all the cached results if the server (data) version has changed.
+   *
+   * @param serverVersion server/data version stamp
+   */
+  synchronized void setVersion(String serverVersion) {
+    if (serverVersion != null && !serverVersion.equals(version)) {
+      if (version != null)
+        LOGGER.info("Server version changed; clearing the query results cache");
+      clear();
+      version = serverVersion;
+      save();
+    }
+  }
+
+  /**
+   * Removes all the cached results.
+   */
+  synchronized void clear() {
+    for (String name : new ArrayList<String>(entries.keySet()))
+      remove(name);
+    save();
+  }
+
+  /**
+   * Saves the index if the LRU order has changed (call on shutdown).
+   */
+  synchronized void close() {
+    if (dirty)
+      save();
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  synchronized long getSize() {
+    return totalBytes;
+  }
+
+  synchronized int getEntries() {
+    return entries.size();
+  }
+
+  File getDir() {
+    return dir;
+  }
+
+  private void evict(String keep) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && it.hasNext()) {
+      Map.Entry<String, Entry> e = it.next(); //eldest first
+      if (e.getKey().equals(keep))
+        continue;
+      it.remove();
+      totalBytes -= e.getValue().size;
+      deleteFiles(e.getKey());
+      LOGGER.debug("Evicted " + e.getKey());
+    }
+  }
+
+  private void remove(String name) {
+    Entry e = entries.remove(name);
+    if (e != null)
+      totalBytes -= e.size;
+    deleteFiles(name);
+  }
+
+  private void deleteFiles(String name) {
+    new File(dir, name + BIOPAX_SUFFIX).delete();
+    new File(dir, name + SNAPSHOT_SUFFIX).delete();
+  }
+
+  private static String fileName(String key) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-1");
+      StringBuilder sb = new StringBuilder();
+      for (byte b : md.digest(key.getBytes(StandardCharsets.UTF_8)))
+        sb.append(String.format("%02x", b));
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // index line format: name=created,size,lastAccess
+  private void load() {
+    // unfinished files, if Cytoscape was closed while writing
+    final File[] tmp = dir.listFiles((d, n) -> n.endsWith(".tmp"));
+    if (tmp != null)
+      for (File f : tmp)
+        f.delete();
+    final File index = new File(dir, INDEX_FILE);
+    if (!index.exists())
+      return;
+    final Properties props = new Properties();
+    try (InputStream is = new FileInputStream(index)) {
+      props.load(is);
+    } catch (IOException e) {
+      LOGGER.warn("Failed reading the cache index; starting over", e);
+      return;
+    }
+    version = props.getProperty(VERSION_KEY);
+    props.remove(VERSION_KEY);
+    final List<String> names = new ArrayList<String>(props.stringPropertyNames());
+    final Map<String, long[]> values = new HashMap<String, long[]>();
+    for (String name : names) {
+      String[] v = props.getProperty(name).split(",");
+      if (v.length != 3 || !new File(dir, name + BIOPAX_SUFFIX).exists())
+        continue;
+      try {
+        values.put(name, new long[]{Long.parseLong(v[0]), Long.parseLong(v[1]), Long.parseLong(v[2])});
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Ignore bad cache index entry: " + name);
+      }
+    }
+    names.retainAll(values.keySet());
+    //restore the LRU order
+    Collections.sort(names, (a, b) -> Long.compare(values.get(a)[2], values.get(b)[2]));
+    for (String name : names) {
+      long[] v = values.get(name);
+      entries.put(name, new Entry(v[0], v[1]));
+      totalBytes += v[1];
+    }
+  }
+
+  private void save() {
+    final Properties props = new Properties();
+    if (version != null)
+      props.setProperty(VERSION_KEY, version);
+    long order = 0;
+    for (Map.Entry<String, Entry> e : entries.entrySet())
+      props.setProperty(e.getKey(), e.getValue().created + "," + e.getValue().size + "," + (order++));
+    try (OutputStream os = new FileOutputStream(new File(dir, INDEX_FILE))) {
+      props.store(os, "CyPath2 query results cache");
+      dirty = false;
+    } catch (IOException e) {
+      LOGGER.warn("Failed saving the cache index", e);
+    }
+  }
+
+  /**
+   * Normalized (canonical) form of a cPath2 query, the cache key:
+   * the cPath2 service endpoint, command, and the query parameters
+   * (kind, sources/targets, direction, limit, organism and datasource filters),
+   * where all collections are sorted. It is made from the same values as the query is,
+   * by the same named methods (the query objects do not expose their parameters).
+   */
+  static final class Key {
+    private final String command;
+    private final SortedMap<String, String> params = new TreeMap<String, String>();
+
+    private Key(String command) {
+      this.command = command;
+    }
+
+    /**
+     * @param sources URIs or IDs
+     * @return new key of a 'get' query
+     */
+    static Key get(Collection<String> sources) {
+      return new Key("get").sources(sources);
+    }
+
+    /**
+     * @param kind graph query type
+     * @return new key of a 'graph' query
+     */
+    static Key graph(GraphType kind) {
+      return new Key("graph").set("kind", kind);
+    }
+
+    Key sources(Collection<String> sources) {
+      return set("source", sources);
+    }
+
+    Key targets(Collection<String> targets) {
+      return set("target", targets);
+    }
+
+    Key direction(Direction direction) {
+      return set("direction", direction);
+    }
+
+    Key limit(Integer limit) {
+      return set("limit", limit);
+    }
+
+    Key organismFilter(Collection<String> organisms) {
+      return set("organism", organisms);
+    }
+
+    Key datasourceFilter(Collection<String> datasources) {
+      return set("datasource", datasources);
+    }
+
+    //null or empty values are skipped (the defaults)
+    private Key set(String name, Object value) {
+      if (value instanceof Collection) {
+        final List<String> list = new ArrayList<String>();
+        for (Object v : (Collection<?>) value)
+          list.add(String.valueOf(v));
+        Collections.sort(list);
+        value = (list.isEmpty()) ? null : list;
+      }
+      if (value == null)
+        params.remove(name);
+      else
+        params.put(name, value.toString());
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append((App.client != null) ? App.client.getEndPointURL() : "").append('|').append(command);
+      for (Map.Entry<String, String> e : params.entrySet())
+        sb.append('|').append(e.getKey()).append('=').append(e.getValue());
+      return sb.toString();
+    }
+  }
+
+  private static final class Entry {
+    final long created;
+    final long size;
+
+    Entry(long created, long size) {
+      this.created = created;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.Map;
+
+/**
+ * Shows the query results cache (see {@link ResultCache}) statistics:
+ * hits, misses, entries and size; and lets the user clear the cache.
+ *
+ * @author rodche
+ */
+final class ShowCacheInfoAction extends AbstractCyAction {
+
+  private static final long serialVersionUID = -2473102516804739183L;
+
+  public ShowCacheInfoAction(Map<String, String> configProps) {
+    super(configProps, App.cyServices.applicationManager, App.cyServices.networkViewManager);
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent ae) {
+    final JFrame frame = App.cyServices.cySwingApplication.getJFrame();
+    final ResultCache cache = App.resultCache;
+    if (cache == null) {
+      JOptionPane.showMessageDialog(frame, "The query results cache is disabled (see the "
+        + ResultCache.PROP_CACHE_SIZE_MB + " property).", "Query Results Cache", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+
+    final String message = String.format("<html>Directory: %s<br/>Entries: %d (%.1f MB)<br/>"
+        + "Hits: %d<br/>Misses: %d<br/>(since Cytoscape started)</html>",
+      cache.getDir(), cache.getEntries(), cache.getSize() / 1048576.0, cache.getHits(), cache.getMisses());
+    final Object[] options = {"Close", "Clear Cache"};
+    final int choice = JOptionPane.showOptionDialog(frame, message, "Query Results Cache",
+      JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
+    if (choice == 1)
+      cache.clear();
+  }
+}
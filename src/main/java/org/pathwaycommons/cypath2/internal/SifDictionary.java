@@ -0,0 +1,198 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Dictionary-encoded SIF edge list attributes (datasource, publication, pathway):
+ * each edge has the integer codes (the "*_codes" list columns) of its values,
+ * and the values are in the network's dictionaries (the "*_dictionary" list columns,
+ * where a code is the index, of the network hidden table row).
+ * Edges with the same values are given one list of codes, and all the codes - the same Integer objects;
+ * whether that list is shared in memory depends on the CyTable keeping the instance it was given,
+ * rather than a copy (SifParseBenchmark reports that, and the retained heap, for the real table).
+ * The plain list columns are derived (decoded) on demand, for some edges (e.g., selected) or all.
+ *
+ * @author rodche
+ */
+final class SifDictionary {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SifDictionary.class);
+
+  static final String CODES_SUFFIX = "_codes";
+  static final String DICTIONARY_SUFFIX = "_dictionary";
+
+  // rough heap sizes (64-bit JVM, compressed oops) for the memory saved estimate
+  private static final int LIST_BYTES = 40; //ArrayList and its array header
+  private static final int REF_BYTES = 4;
+  private static final int INTEGER_BYTES = 16;
+
+  private final String[] columns;
+  private final List<Map<String, Integer>> codes = new ArrayList<Map<String, Integer>>();
+  private final List<List<String>> values = new ArrayList<List<String>>();
+  // the same codes for many edges
+  private final Map<List<Integer>, List<Integer>> lists = new HashMap<List<Integer>, List<Integer>>();
+  private Integer[] integers = new Integer[256];
+  private long edgeValues;
+  private long edgeLists;
+
+  /**
+   * Constructor.
+   *
+   * @param columns names of the list columns to encode
+   */
+  SifDictionary(String... columns) {
+    this.columns = columns;
+    for (int i = 0; i < columns.length; i++) {
+      codes.add(new HashMap<String, Integer>());
+      values.add(new ArrayList<String>());
+    }
+  }
+
+  /**
+   * Creates the codes columns (if not there yet).
+   *
+   * @param network SIF network
+   */
+  void createColumns(CyNetwork network) {
+    final CyTable table = network.getDefaultEdgeTable();
+    for (String column : columns)
+      if (table.getColumn(column + CODES_SUFFIX) == null)
+        table.createListColumn(column + CODES_SUFFIX, Integer.class, false);
+  }
+
+  /**
+   * Sets the edge's codes column value.
+   *
+   * @param row    edge row
+   * @param column column index (in the constructor's order)
+   * @param list   values
+   */
+  void set(CyRow row, int column, List<String> list) {
+    row.set(columns[column] + CODES_SUFFIX, encode(column, list));
+  }
+
+  /*
+   * Gets the codes of the values (a shared, unmodifiable list).
+   */
+  private List<Integer> encode(int column, List<String> list) {
+    final Map<String, Integer> index = codes.get(column);
+    final List<Integer> encoded = new ArrayList<Integer>(list.size());
+    for (String value : list) {
+      Integer code = index.get(value);
+      if (code == null) {
+        code = integer(values.get(column).size());
+        index.put(value, code);
+        values.get(column).add(value);
+      }
+      encoded.add(code);
+    }
+    edgeValues += list.size();
+    edgeLists++;
+    // the column index is not in the key, which is fine, for it's just the same codes
+    List<Integer> shared = lists.get(encoded);
+    if (shared == null) {
+      shared = Collections.unmodifiableList(encoded);
+      lists.put(encoded, shared);
+    }
+    return shared;
+  }
+
+  private Integer integer(int code) {
+    if (code >= integers.length)
+      integers = Arrays.copyOf(integers, integers.length * 2);
+    if (integers[code] == null)
+      integers[code] = code;
+    return integers[code];
+  }
+
+  /**
+   * Saves the dictionaries to the network hidden table
+   * and logs the estimated memory saved vs. the plain list columns
+   * (assuming the table keeps the code lists it was given; otherwise the saving is smaller).
+   *
+   * @param network SIF network
+   */
+  void writeTo(CyNetwork network) {
+    int distinctValues = 0;
+    for (int i = 0; i < columns.length; i++) {
+      Attributes.set(network, network, CyNetwork.HIDDEN_ATTRS, columns[i] + DICTIONARY_SUFFIX,
+        new ArrayList<String>(values.get(i)), String.class);
+      distinctValues += values.get(i).size();
+    }
+
+    if (LOGGER.isInfoEnabled()) {
+      // (the values are String references in both cases; the plain ones are interned, see CustomSifParser)
+      final long plain = edgeLists * LIST_BYTES + edgeValues * REF_BYTES;
+      long encoded = edgeLists * REF_BYTES + (long) distinctValues * (INTEGER_BYTES + REF_BYTES);
+      for (List<Integer> list : lists.keySet())
+        encoded += LIST_BYTES + list.size() * REF_BYTES;
+      LOGGER.info(String.format("Encoded %d edge list values (%d lists) with %d codes and %d distinct lists; " +
+          "~%.1f MB instead of ~%.1f MB (estimate, if the code lists are shared)", edgeValues, edgeLists,
+        distinctValues, lists.size(), encoded / 1048576.0, plain / 1048576.0));
+    }
+  }
+
+  /**
+   * @param network network
+   * @return true when the network has the dictionary-encoded edge list columns
+   */
+  static boolean isEncoded(CyNetwork network) {
+    if (network == null)
+      return false;
+    final CyTable table = network.getTable(CyNetwork.class, CyNetwork.HIDDEN_ATTRS);
+    for (String column : CustomSifParser.LIST_COLUMNS)
+      if (table.getColumn(column + DICTIONARY_SUFFIX) != null)
+        return true;
+    return false;
+  }
+
+  /**
+   * Sets the plain (decoded) list columns of the edges that do not have them yet.
+   *
+   * @param network SIF network with the dictionary-encoded edge list columns
+   * @param edges   edges
+   * @return number of edges decoded
+   */
+  static int decode(CyNetwork network, Collection<CyEdge> edges) {
+    final CyRow networkRow = network.getRow(network, CyNetwork.HIDDEN_ATTRS);
+    final CyTable table = network.getDefaultEdgeTable();
+    final List<String> columns = new ArrayList<String>();
+    final List<List<String>> dictionaries = new ArrayList<List<String>>();
+    for (String column : CustomSifParser.LIST_COLUMNS) {
+      if (networkRow.getTable().getColumn(column + DICTIONARY_SUFFIX) == null
+        || table.getColumn(column + CODES_SUFFIX) == null)
+        continue;
+      columns.add(column);
+      dictionaries.add(networkRow.getList(column + DICTIONARY_SUFFIX, String.class));
+      if (table.getColumn(column) == null)
+        table.createListColumn(column, String.class, false);
+    }
+
+    int count = 0;
+    for (CyEdge edge : edges) {
+      final CyRow row = network.getRow(edge);
+      boolean decoded = false;
+      for (int i = 0; i < columns.size(); i++) {
+        final String column = columns.get(i);
+        final List<Integer> encoded = row.getList(column + CODES_SUFFIX, Integer.class);
+        if (encoded == null || row.isSet(column))
+          continue;
+        final List<String> dictionary = dictionaries.get(i);
+        final List<String> list = new ArrayList<String>(encoded.size());
+        for (Integer code : encoded)
+          list.add(dictionary.get(code));
+        row.set(column, list);
+        decoded = true;
+      }
+      if (decoded)
+        count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,98 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.EditorMap;
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-import string de-duplication (interning) pool.
+ * <p>
+ * BioPAX data repeat the same strings many times - xref db names, CV terms,
+ * data source and organism names, etc.; the parser creates a new String for each occurrence,
+ * and so does the network mapper for the attribute values it composes (xref links, labels).
+ * Using one pool for the model (right after parsing) and then for the Cytoscape
+ * attributes keeps a single copy of every such string. Unlike String.intern(),
+ * the pool is released with the import (it's not kept for the whole JVM life).
+ * The pool is thread-safe.
+ *
+ * @author rodche
+ */
+final class StringPool {
+
+  private static final EditorMap EDITOR_MAP = SimpleEditorMap.L3;
+
+  private final ConcurrentMap<String, String> pool;
+  private final AtomicLong hits;
+
+  StringPool() {
+    this.pool = new ConcurrentHashMap<String, String>(1 << 12);
+    this.hits = new AtomicLong();
+  }
+
+  /**
+   * Gets the pooled copy of the string.
+   *
+   * @param s string (can be null)
+   * @return the pooled string that equals to s (or s itself if it's new or null)
+   */
+  String intern(String s) {
+    if (s == null)
+      return null;
+    final String pooled = pool.putIfAbsent(s, s);
+    if (pooled == null)
+      return s;
+    hits.incrementAndGet();
+    return pooled;
+  }
+
+  /**
+   * Replaces the String values of the BioPAX element's data properties
+   * with their pooled copies (changes nothing but the element).
+   *
+   * @param bpe BioPAX (L3) element
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void intern(BioPAXElement bpe) {
+    for (PropertyEditor editor : EDITOR_MAP.getEditorsOf(bpe)) {
+      if (editor.getRange() != String.class)
+        continue;
+      final List<Object> values = new ArrayList<Object>(editor.getValueFromBean(bpe));
+      for (Object value : values) {
+        if (!(value instanceof String) || editor.isUnknown(value))
+          continue;
+        final String pooled = intern((String) value);
+        if (pooled != value) {
+          if (editor.isMultipleCardinality())
+            editor.removeValueFromBean(value, bpe);
+          editor.setValueToBean(pooled, bpe);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return number of unique strings in the pool
+   */
+  int size() {
+    return pool.size();
+  }
+
+  /**
+   * @return number of duplicate strings replaced so far
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public String toString() {
+    return "StringPool{unique=" + size() + ", duplicates=" + getHits() + "}";
+  }
+}
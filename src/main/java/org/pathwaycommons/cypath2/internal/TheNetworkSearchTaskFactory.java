@@ -47,7 +47,8 @@ public class TheNetworkSearchTaskFactory extends AbstractNetworkSearchTaskFactor
       for (String name : q.split("[,\\s]+"))
         srcs.add(name);
       return new TaskIterator(new NetworkAndViewTask(
-        App.client.createGraphQuery().kind(GraphType.PATHSBETWEEN).sources(srcs), q)
+        App.client.createGraphQuery().kind(GraphType.PATHSBETWEEN).sources(srcs), q, srcs,
+        ResultCache.Key.graph(GraphType.PATHSBETWEEN).sources(srcs))
       );
     }
   }
@@ -0,0 +1,133 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.level3.PublicationXref;
+import org.biopax.paxtools.model.level3.RelationshipXref;
+import org.biopax.paxtools.model.level3.UnificationXref;
+import org.biopax.paxtools.model.level3.Xref;
+
+import java.util.*;
+
+/**
+ * The xref-based node attribute values of a BioPAX element:
+ * de-duplicated unification, relationship and publication xref ids and links
+ * (lists), and the "primary" UNIPROT, NCBI GENE and GENE SYMBOL ids.
+ * <p>
+ * Immutable, so one summary of an entity reference can be shared
+ * by all the physical entities that refer to it (different states,
+ * locations of the same protein, etc.), including from parallel threads.
+ *
+ * @author rodche
+ */
+final class XrefSummary {
+
+  final List<String> unificationIds;
+  final List<String> relationshipIds;
+  final List<String> publicationIds;
+  final List<String> unificationLinks;
+  final List<String> relationshipLinks;
+  final List<String> publicationLinks;
+  final String geneSymbol;
+  final String ncbiGene;
+  final String uniprot;
+
+  /**
+   * Summarizes the xrefs.
+   *
+   * @param xrefs        xrefs to get the special (primary) ids from, in order (the first one found wins)
+   * @param xrefsMembers xrefs to make the lists from (e.g., including the member entity references' ones)
+   * @param stringPool   string pool (can be null)
+   */
+  XrefSummary(Collection<Xref> xrefs, Collection<Xref> xrefsMembers, StringPool stringPool) {
+    String geneSymbol = null;
+    String ncbiGene = null;
+    String uniprot = null;
+    //add special simple (String) uniprot, ncbi gene, gene symbol attributes
+    // (do not create those for generic ER/PE, - impossible to define a "primary" ID)
+    for (Xref link : xrefs) {
+      if (!valid(link))
+        continue; // too bad (data issue...); skip it
+      final String db = link.getDb().toUpperCase().trim();
+      final String id = link.getId().trim();
+      //won't replace any existing value (added first)
+      if (db.equalsIgnoreCase("HGNC SYMBOL") //- official primary db name
+        || db.startsWith("HGNC") || db.startsWith("HUGO GENE")
+        || db.startsWith("GENE SYMBOL") || db.startsWith("GENE NAME")) {
+        if (geneSymbol == null && !id.startsWith("HGNC:")) //ignore HGNC:12345 IDs
+          geneSymbol = intern(stringPool, id);
+      } else if (db.equalsIgnoreCase("NCBI GENE") //main (official) db name
+        || db.equalsIgnoreCase("ENTREZ GENE") || db.equalsIgnoreCase("GENE ID")) {
+        if (ncbiGene == null)
+          ncbiGene = intern(stringPool, id);
+      } else if (db.startsWith("UNIPROT")
+        || db.startsWith("SWISSPROT") || db.startsWith("SWISS-PROT")) {
+        if (uniprot == null)
+          uniprot = intern(stringPool, id);
+      }
+    }
+    this.geneSymbol = geneSymbol;
+    this.ncbiGene = ncbiGene;
+    this.uniprot = uniprot;
+
+    //these sets, one per xref class, are to store standard IDs only (no db name)
+    final Set<String> uniXrefs = new LinkedHashSet<String>();
+    final Set<String> relXrefs = new LinkedHashSet<String>();
+    final Set<String> pubXrefs = new LinkedHashSet<String>();
+    //next are for (hidden) list attributes that contain more info about the xref
+    final Set<String> uniLinks = new LinkedHashSet<String>();
+    final Set<String> relLinks = new LinkedHashSet<String>();
+    final Set<String> pubLinks = new LinkedHashSet<String>();
+    for (Xref link : xrefsMembers) {
+      if (!valid(link))
+        continue;
+      final String xlink = ExternalLinkUtil.createLink(link.getDb(), link.getId());
+      if (link instanceof UnificationXref) {
+        uniLinks.add(intern(stringPool, xlink));
+        uniXrefs.add(intern(stringPool, link.toString()));
+      } else if (link instanceof PublicationXref) {
+        pubLinks.add(intern(stringPool, publicationLink(xlink, (PublicationXref) link)));
+        pubXrefs.add(intern(stringPool, link.toString()));
+      } else if (link instanceof RelationshipXref) {
+        relLinks.add(intern(stringPool, xlink));
+        relXrefs.add(intern(stringPool, link.toString()));
+      }
+    }
+    this.unificationIds = list(uniXrefs);
+    this.relationshipIds = list(relXrefs);
+    this.publicationIds = list(pubXrefs);
+    this.unificationLinks = list(uniLinks);
+    this.relationshipLinks = list(relLinks);
+    this.publicationLinks = list(pubLinks);
+  }
+
+  private static String publicationLink(String xlink, PublicationXref xl) {
+    StringBuilder temp = new StringBuilder(xlink);
+    temp.append(" ");
+    if (!xl.getAuthor().isEmpty()) {
+      temp.append(xl.getAuthor().toString()).append(" et al., ");
+    }
+    if (xl.getTitle() != null) {
+      temp.append(xl.getTitle());
+    }
+    if (!xl.getSource().isEmpty()) {
+      temp.append(" (").append(xl.getSource().toString());
+      if (xl.getYear() > 0) {
+        temp.append(", ").append(xl.getYear());
+      }
+      temp.append(")");
+    }
+    return temp.toString();
+  }
+
+  private static boolean valid(Xref link) {
+    return link.getDb() != null && !link.getDb().isEmpty()
+      && link.getId() != null && !link.getId().isEmpty();
+  }
+
+  private static List<String> list(Set<String> values) {
+    return Collections.unmodifiableList(new ArrayList<String>(values));
+  }
+
+  private static String intern(StringPool stringPool, String s) {
+    return (stringPool != null) ? stringPool.intern(s) : s;
+  }
+}
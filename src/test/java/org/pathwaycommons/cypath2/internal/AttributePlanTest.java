@@ -0,0 +1,94 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Node attributes extraction by the compiled plan of a BioPAX type,
+ * and writing them to a network (in bulk).
+ *
+ * @author rodche
+ */
+public class AttributePlanTest {
+
+  private static final String BASE = "http://pathwaycommons.org/cypath2/test/";
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void multipleValuesInOneList() {
+    final Protein protein = protein();
+    final Map<String, Object> columns = new LinkedHashMap<String, Object>();
+    AttributePlan.of(protein).extract(protein, columns, new StringPool());
+
+    // multiple-cardinality property values - one list per column (no duplicates), not the last value
+    assertEquals(Arrays.asList("first comment", "second comment"), sorted((List<String>) columns.get("comment")));
+    assertEquals(2, ((List<String>) columns.get("entityReference/xref")).size());
+    assertEquals(2, ((List<String>) columns.get("entityReference/comment")).size());
+    // single-cardinality ones - the value, and the object values are followed
+    assertEquals("TP53", columns.get("displayName"));
+    assertEquals("p53 reference", columns.get("entityReference/displayName"));
+    assertFalse(columns.containsKey("name"));
+  }
+
+  @Test
+  public void samePlan() {
+    final Protein protein = protein();
+    assertSame(AttributePlan.of(protein), AttributePlan.of(protein));
+  }
+
+  @Test
+  public void writeToNetwork() {
+    final Protein protein = protein();
+    final CyNetwork network = new NetworkTestSupport().getNetworkFactory().createNetwork();
+    final CyNode node = network.addNode();
+    final ColumnWriter writer = new ColumnWriter(network);
+    writer.add(node, BioPaxMapper.extractAttributes(protein, new StringPool()));
+    writer.flush();
+
+    assertEquals(Arrays.asList("first comment", "second comment"),
+      sorted(network.getRow(node).getList("comment", String.class)));
+    assertEquals(2, network.getRow(node).getList("entityReference/xref", String.class).size());
+    assertEquals("TP53", network.getRow(node).get("displayName", String.class));
+  }
+
+  private static List<String> sorted(List<String> values) {
+    assertNotNull(values);
+    final List<String> list = new ArrayList<String>(values);
+    Collections.sort(list);
+    return list;
+  }
+
+  private static Protein protein() {
+    final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase(BASE);
+    final UnificationXref ux = model.addNew(UnificationXref.class, BASE + "ux");
+    ux.setDb("uniprot knowledgebase");
+    ux.setId("P04637");
+    final RelationshipXref rx = model.addNew(RelationshipXref.class, BASE + "rx");
+    rx.setDb("hgnc symbol");
+    rx.setId("TP53");
+    final ProteinReference pr = model.addNew(ProteinReference.class, BASE + "pr");
+    pr.setDisplayName("p53 reference");
+    pr.addXref(ux);
+    pr.addXref(rx);
+    pr.addComment("reference comment 1");
+    pr.addComment("reference comment 2");
+    final Protein protein = model.addNew(Protein.class, BASE + "p53");
+    protein.setDisplayName("TP53");
+    protein.addName("p53");
+    protein.addName("tumor protein p53");
+    protein.addComment("first comment");
+    protein.addComment("second comment");
+    protein.setEntityReference(pr);
+    return protein;
+  }
+}
@@ -0,0 +1,155 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.model.level3.Process;
+import org.biopax.paxtools.pattern.miner.SIFEnum;
+import org.biopax.paxtools.pattern.miner.SIFInteraction;
+import org.biopax.paxtools.pattern.miner.SIFType;
+import org.biopax.paxtools.pattern.util.Blacklist;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * SIF patterns search, sequential vs. parallel (one searcher per SIF type),
+ * on a small model of reactions, controls and complexes.
+ *
+ * @author rodche
+ */
+public class BioPaxMapperTest {
+
+  private static final String BASE = "http://pathwaycommons.org/cypath2/test/";
+
+  @BeforeClass
+  public static void loadBlacklist() {
+    App.blacklist = new Blacklist(App.class.getResourceAsStream("/blacklist.txt"));
+  }
+
+  @AfterClass
+  public static void resetBlacklist() {
+    App.blacklist = null;
+  }
+
+  @Test
+  public void parallelSifSameAsSequential() {
+    final Model model = model();
+    BioPaxMapper.sifPipeline().run(model);
+    final SIFType[] types = SIFEnum.values();
+
+    final List<String> expected = describe(BioPaxMapper.searchSif(model, types, false));
+    assertFalse(expected.isEmpty());
+    // (the searches only read the model; repeat to give the thread interleaving a chance)
+    for (int i = 0; i < 5; i++)
+      assertEquals("run " + i, expected, describe(BioPaxMapper.searchSif(model, types, true)));
+  }
+
+  // interactions, sorted, each with the values that go to the SIF edge attributes
+  private static List<String> describe(Set<SIFInteraction> interactions) {
+    final List<SIFInteraction> sorted = new ArrayList<SIFInteraction>(interactions);
+    Collections.sort(sorted);
+    final List<String> rows = new ArrayList<String>();
+    for (SIFInteraction inter : sorted)
+      rows.add(inter.sourceID + "\t" + inter.type.getTag() + "\t" + inter.targetID
+        + "\t" + new TreeSet<String>(inter.getDataSources())
+        + "\t" + new TreeSet<String>(inter.getPublicationIDs(true))
+        + "\t" + new TreeSet<String>(inter.getPathwayNames()));
+    return rows;
+  }
+
+  // a kinase complex phosphorylates a protein, which then catalyzes a small molecule conversion
+  private static Model model() {
+    final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase(BASE);
+
+    final Provenance source = model.addNew(Provenance.class, BASE + "source");
+    source.setDisplayName("Test Source");
+    final PublicationXref pub = model.addNew(PublicationXref.class, BASE + "pub");
+    pub.setDb("pubmed");
+    pub.setId("123456");
+    final SequenceModificationVocabulary phospho = model.addNew(SequenceModificationVocabulary.class,
+      BASE + "phospho");
+    phospho.addTerm("O-phospho-L-serine");
+
+    final Protein kinase = protein(model, "kinase", "P00001");
+    final Protein cyclin = protein(model, "cyclin", "P00002");
+    final Complex complex = model.addNew(Complex.class, BASE + "complex");
+    complex.setDisplayName("kinase:cyclin");
+    complex.addComponent(kinase);
+    complex.addComponent(cyclin);
+
+    // substrate phosphorylation, catalyzed by the complex
+    final Protein substrate = protein(model, "substrate", "P00003");
+    final Protein substrateP = model.addNew(Protein.class, BASE + "substrate_p");
+    substrateP.setDisplayName("substrate (phosphorylated)");
+    substrateP.setEntityReference(substrate.getEntityReference());
+    final ModificationFeature feature = model.addNew(ModificationFeature.class, BASE + "feature");
+    feature.setModificationType(phospho);
+    substrate.getEntityReference().addEntityFeature(feature);
+    substrateP.addFeature(feature);
+    final BiochemicalReaction phosphorylation = reaction(model, "phosphorylation", substrate, substrateP,
+      source, pub);
+    final Catalysis kinaseActivity = catalysis(model, "kinase_activity", complex, phosphorylation);
+
+    // small molecule conversion, catalyzed by the phosphorylated substrate
+    final BiochemicalReaction conversion = reaction(model, "conversion",
+      smallMolecule(model, "substrate_a", "CHEBI:1"), smallMolecule(model, "product_b", "CHEBI:2"), source, pub);
+    final Catalysis enzymeActivity = catalysis(model, "enzyme_activity", substrateP, conversion);
+
+    final Pathway pathway = model.addNew(Pathway.class, BASE + "pathway");
+    pathway.setDisplayName("Test pathway");
+    pathway.addDataSource(source);
+    for (Process process : new Process[]{phosphorylation, kinaseActivity, conversion, enzymeActivity})
+      pathway.addPathwayComponent(process);
+    return model;
+  }
+
+  private static Protein protein(Model model, String name, String accession) {
+    final ProteinReference pr = model.addNew(ProteinReference.class, "http://identifiers.org/uniprot/" + accession);
+    pr.setDisplayName(name.toUpperCase());
+    final UnificationXref ux = model.addNew(UnificationXref.class, BASE + "ux_" + accession);
+    ux.setDb("uniprot knowledgebase");
+    ux.setId(accession);
+    pr.addXref(ux);
+    final Protein protein = model.addNew(Protein.class, BASE + name);
+    protein.setDisplayName(name);
+    protein.setEntityReference(pr);
+    return protein;
+  }
+
+  private static SmallMolecule smallMolecule(Model model, String name, String chebi) {
+    final SmallMoleculeReference smr = model.addNew(SmallMoleculeReference.class,
+      "http://identifiers.org/chebi/" + chebi);
+    smr.setDisplayName(name);
+    final SmallMolecule sm = model.addNew(SmallMolecule.class, BASE + name);
+    sm.setDisplayName(name);
+    sm.setEntityReference(smr);
+    return sm;
+  }
+
+  private static BiochemicalReaction reaction(Model model, String name, PhysicalEntity left, PhysicalEntity right,
+                                              Provenance source, PublicationXref pub) {
+    final BiochemicalReaction rxn = model.addNew(BiochemicalReaction.class, BASE + name);
+    rxn.setDisplayName(name);
+    rxn.addLeft(left);
+    rxn.addRight(right);
+    rxn.setConversionDirection(ConversionDirectionType.LEFT_TO_RIGHT);
+    rxn.addDataSource(source);
+    rxn.addXref(pub);
+    return rxn;
+  }
+
+  private static Catalysis catalysis(Model model, String name, Controller controller, Process controlled) {
+    final Catalysis catalysis = model.addNew(Catalysis.class, BASE + name);
+    catalysis.setDisplayName(name);
+    catalysis.setControlType(ControlType.ACTIVATION);
+    catalysis.addController(controller);
+    catalysis.addControlled(controlled);
+    return catalysis;
+  }
+}
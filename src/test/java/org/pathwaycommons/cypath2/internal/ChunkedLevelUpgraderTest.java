@@ -0,0 +1,111 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.converter.LevelUpgrader;
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level2.pathwayStep;
+import org.biopax.paxtools.model.level3.PathwayStep;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * BioPAX Level2 to Level3 conversion in chunks vs. all at once (LevelUpgrader),
+ * using the bundled l2-sample.owl.
+ *
+ * @author rodche
+ */
+public class ChunkedLevelUpgraderTest {
+
+  @Test
+  public void sameAsLevelUpgrader() throws IOException {
+    final Model expected = new LevelUpgrader().filter(l2());
+    assertFalse(expected.getObjects().isEmpty());
+    // (the sample has a top pathway that refers to almost everything)
+    for (int chunkSize : new int[]{1, 3, 10}) {
+      final Model l2 = l2();
+      final Model actual = new ChunkedLevelUpgrader(chunkSize).filter(l2);
+      assertTrue(l2.getObjects().isEmpty());
+      assertEquivalent(expected, actual, "chunkSize=" + chunkSize);
+    }
+  }
+
+  @Test
+  public void noChunks() throws IOException {
+    final Model expected = new LevelUpgrader().filter(l2());
+    assertEquivalent(expected, new ChunkedLevelUpgrader(0).filter(l2()), "chunkSize=0");
+    assertEquivalent(expected, new ChunkedLevelUpgrader(100000).filter(l2()), "chunkSize=100000");
+  }
+
+  @Test
+  public void referenceCycle() throws IOException {
+    // pathway steps that refer to each other, but nothing refers to them (no root element)
+    final Model l2 = l2();
+    final pathwayStep step1 = l2.addNew(pathwayStep.class, l2.getXmlBase() + "step1");
+    final pathwayStep step2 = l2.addNew(pathwayStep.class, l2.getXmlBase() + "step2");
+    step1.addNEXT_STEP(step2);
+    step2.addNEXT_STEP(step1);
+
+    final Model l3 = new ChunkedLevelUpgrader(3).filter(l2);
+    final PathwayStep s1 = (PathwayStep) l3.getByID(l2.getXmlBase() + "step1");
+    final PathwayStep s2 = (PathwayStep) l3.getByID(l2.getXmlBase() + "step2");
+    assertNotNull(s1);
+    assertNotNull(s2);
+    assertTrue(s1.getNextStep().contains(s2));
+    assertTrue(s2.getNextStep().contains(s1));
+  }
+
+  // same objects (URIs and types) and property values (objects - by URI)
+  private static void assertEquivalent(Model expected, Model actual, String message) {
+    assertEquals(message, uris(expected), uris(actual));
+    assertEquals(message, counts(expected), counts(actual));
+    for (BioPAXElement e : expected.getObjects()) {
+      final BioPAXElement a = actual.getByID(e.getUri());
+      for (PropertyEditor editor : SimpleEditorMap.L3.getEditorsOf(e))
+        assertEquals(message + ": " + e.getUri() + " " + editor.getProperty(),
+          values(editor, e), values(editor, a));
+    }
+  }
+
+  private static Set<String> uris(Model model) {
+    final Set<String> uris = new TreeSet<String>();
+    for (BioPAXElement e : model.getObjects())
+      uris.add(e.getUri());
+    return uris;
+  }
+
+  private static Map<String, Integer> counts(Model model) {
+    final Map<String, Integer> counts = new TreeMap<String, Integer>();
+    for (BioPAXElement e : model.getObjects()) {
+      final String type = e.getModelInterface().getSimpleName();
+      counts.put(type, counts.containsKey(type) ? counts.get(type) + 1 : 1);
+    }
+    return counts;
+  }
+
+  private static Set<String> values(PropertyEditor editor, BioPAXElement bpe) {
+    final Set<String> values = new TreeSet<String>();
+    for (Object value : editor.getValueFromBean(bpe)) {
+      if (value == null || editor.isUnknown(value))
+        continue;
+      values.add((value instanceof BioPAXElement) ? ((BioPAXElement) value).getUri() : String.valueOf(value));
+    }
+    return values;
+  }
+
+  private static Model l2() throws IOException {
+    try (InputStream is = ChunkedLevelUpgraderTest.class.getResourceAsStream("/l2-sample.owl")) {
+      final Model model = new SimpleIOHandler(BioPAXLevel.L2).convertFromOWL(is);
+      assertEquals(BioPAXLevel.L2, model.getLevel());
+      return model;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Custom (extended) SIF rows parsing, char by char (CustomSifParser.RowScanner).
+ *
+ * @author rodche
+ */
+public class CustomSifParserTest {
+
+  private CyNetwork network;
+  private CustomSifParser parser;
+
+  @Before
+  public void setUp() {
+    network = new NetworkTestSupport().getNetworkFactory().createNetwork();
+    parser = new CustomSifParser(network);
+  }
+
+  @Test
+  public void row() throws IOException {
+    assertEquals(1, parser.parse(new StringReader(
+      "A\tcontrols-state-change-of\tB\tReactome;PID\t123;456\tP1;P2\n")));
+    assertEquals(2, network.getNodeCount());
+    final CyRow row = edgeRow(0);
+    assertEquals("controls-state-change-of", row.get(CyEdge.INTERACTION, String.class));
+    assertEquals("A (controls-state-change-of) B", row.get(CyNetwork.NAME, String.class));
+    assertEquals(Arrays.asList("Reactome", "PID"), list(row, "datasource"));
+    assertEquals(Arrays.asList("123", "456"), list(row, "publication"));
+    assertEquals(Arrays.asList("P1", "P2"), list(row, "pathway"));
+  }
+
+  @Test
+  public void emptyTokensDropped() throws IOException {
+    parser.parse(new StringReader("A\tin-complex-with\tB\t;Reactome;;PID;\t\tP;\n"));
+    final CyRow row = edgeRow(0);
+    assertEquals(Arrays.asList("Reactome", "PID"), list(row, "datasource"));
+    assertEquals(Collections.emptyList(), list(row, "publication"));
+    assertEquals(Collections.singletonList("P"), list(row, "pathway"));
+  }
+
+  @Test
+  public void blankLinesSkipped() throws IOException {
+    assertEquals(2, parser.parse(new StringReader(
+      "\nA\tin-complex-with\tB\tR\t1\tP\n\n\nB\tin-complex-with\tC\tR\t1\tP\n\n")));
+    assertEquals(2, network.getEdgeCount());
+    assertEquals(3, network.getNodeCount());
+  }
+
+  @Test
+  public void extraColumnsIgnored() throws IOException {
+    parser.parse(new StringReader("A\tin-complex-with\tB\tR\t1\tP\textra;x\tmore\n"));
+    final CyRow row = edgeRow(0);
+    assertEquals(Collections.singletonList("R"), list(row, "datasource"));
+    assertEquals(Collections.singletonList("1"), list(row, "publication"));
+    assertEquals(Collections.singletonList("P"), list(row, "pathway"));
+  }
+
+  @Test
+  public void carriageReturn() throws IOException {
+    // Windows line ends, and no EOL at the end
+    assertEquals(2, parser.parse(new StringReader(
+      "A\tin-complex-with\tB\tR\t1\tP\r\n\r\nB\tin-complex-with\tC\tR\t2\tQ\r")));
+    assertEquals(Collections.singletonList("P"), list(edgeRow(0), "pathway"));
+    assertEquals(Collections.singletonList("Q"), list(edgeRow(1), "pathway"));
+
+    // one row at a time
+    parser.parse("C\tin-complex-with\tD\tR\t3\tS\r");
+    assertEquals(Collections.singletonList("S"), list(edgeRow(2), "pathway"));
+  }
+
+  @Test
+  public void badRowLineNumber() throws IOException {
+    try {
+      parser.parse(new StringReader("A\tin-complex-with\tB\tR\t1\tP\n\nA\tin-complex-with\tC\n"));
+      fail("bad row accepted");
+    } catch (RuntimeException e) {
+      assertEquals("Bad SIF entry at line 3", e.getMessage());
+    }
+    assertEquals(1, parser.getRows());
+
+    try {
+      parser.parse(new StringReader("A\tin-complex-with\tB\tR\t1\tP\r\nA\tB")); //no EOL
+      fail("bad last row accepted");
+    } catch (RuntimeException e) {
+      assertEquals("Bad SIF entry at line 2", e.getMessage());
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void badRow() {
+    parser.parse("A\tin-complex-with\tB\tR\t1");
+  }
+
+  // the edges are in the order they were added
+  private CyRow edgeRow(int index) {
+    final List<CyEdge> edges = new ArrayList<CyEdge>(network.getEdgeList());
+    edges.sort((e1, e2) -> Long.compare(e1.getSUID(), e2.getSUID()));
+    return network.getRow(edges.get(index));
+  }
+
+  private static List<String> list(CyRow row, String column) {
+    return row.getList(column, String.class);
+  }
+}
@@ -0,0 +1,130 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Binary BioPAX model snapshot write/read round trip.
+ *
+ * @author rodche
+ */
+public class ModelSnapshotTest {
+
+  private static final String BASE = "http://pathwaycommons.org/cypath2/test/";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void roundTrip() throws IOException {
+    final Model model = model();
+    final File file = tmp.newFile("model.bpxs");
+    ModelSnapshot.write(model, file);
+
+    final Model loaded = ModelSnapshot.read(file);
+    assertEquals(BASE, loaded.getXmlBase());
+    assertEquals(model.getObjects().size(), loaded.getObjects().size());
+    for (BioPAXElement bpe : model.getObjects()) {
+      final BioPAXElement copy = loaded.getByID(bpe.getUri());
+      assertNotNull(bpe.getUri(), copy);
+      assertNotSame(bpe, copy);
+      assertEquals(bpe.getModelInterface(), copy.getModelInterface());
+      for (PropertyEditor editor : SimpleEditorMap.L3.getEditorsOf(bpe))
+        assertEquals(bpe.getUri() + " " + editor.getProperty(), values(editor, bpe), values(editor, copy));
+    }
+
+    // spot-check a few values of different types
+    final BiochemicalReaction rxn = (BiochemicalReaction) loaded.getByID(BASE + "reaction");
+    assertEquals(ConversionDirectionType.LEFT_TO_RIGHT, rxn.getConversionDirection());
+    assertEquals(2.5f, rxn.getParticipantStoichiometry().iterator().next().getStoichiometricCoefficient(), 0f);
+    final PublicationXref pub = (PublicationXref) loaded.getByID(BASE + "pub");
+    assertEquals(2015, pub.getYear());
+    assertSame(loaded.getByID(BASE + "pr"), ((Protein) loaded.getByID(BASE + "a")).getEntityReference());
+
+    // the file is not held open (e.g., memory-mapped) after reading
+    assertTrue(file.delete());
+  }
+
+  @Test(expected = IOException.class)
+  public void notSnapshot() throws IOException {
+    final File file = tmp.newFile("not.bpxs");
+    try (FileOutputStream os = new FileOutputStream(file)) {
+      os.write("<rdf:RDF/>".getBytes("UTF-8"));
+    }
+    ModelSnapshot.read(file);
+  }
+
+  // values as strings (objects - by URI)
+  private static Set<String> values(PropertyEditor editor, BioPAXElement bpe) {
+    final Set<String> values = new HashSet<String>();
+    for (Object value : editor.getValueFromBean(bpe)) {
+      if (value == null || editor.isUnknown(value))
+        continue;
+      values.add((value instanceof BioPAXElement) ? ((BioPAXElement) value).getUri() : String.valueOf(value));
+    }
+    return values;
+  }
+
+  private static Model model() {
+    final Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase(BASE);
+
+    final Provenance source = model.addNew(Provenance.class, BASE + "source");
+    source.setDisplayName("Test Source");
+    source.addComment("comment with non-ASCII: α-synuclein");
+    final UnificationXref ux = model.addNew(UnificationXref.class, BASE + "ux");
+    ux.setDb("uniprot knowledgebase");
+    ux.setId("P12345");
+    final PublicationXref pub = model.addNew(PublicationXref.class, BASE + "pub");
+    pub.setDb("pubmed");
+    pub.setId("123456");
+    pub.setYear(2015);
+    pub.addAuthor("Smith J");
+    pub.addAuthor("Doe J");
+
+    final ProteinReference pr = model.addNew(ProteinReference.class, BASE + "pr");
+    pr.setDisplayName("TP53");
+    pr.addName("p53");
+    pr.addName("tumor protein p53");
+    pr.addXref(ux);
+    final Protein a = model.addNew(Protein.class, BASE + "a");
+    a.setDisplayName("TP53");
+    a.setEntityReference(pr);
+    final Protein b = model.addNew(Protein.class, BASE + "b");
+    b.setDisplayName("TP53 (phosphorylated)");
+    b.setEntityReference(pr);
+
+    final Stoichiometry st = model.addNew(Stoichiometry.class, BASE + "st");
+    st.setPhysicalEntity(a);
+    st.setStoichiometricCoefficient(2.5f);
+    final BiochemicalReaction rxn = model.addNew(BiochemicalReaction.class, BASE + "reaction");
+    rxn.setDisplayName("TP53 phosphorylation");
+    rxn.addLeft(a);
+    rxn.addRight(b);
+    rxn.addParticipantStoichiometry(st);
+    rxn.setConversionDirection(ConversionDirectionType.LEFT_TO_RIGHT);
+    rxn.addDataSource(source);
+    rxn.addXref(pub);
+
+    final Pathway pathway = model.addNew(Pathway.class, BASE + "pathway");
+    pathway.setDisplayName("Test pathway");
+    pathway.addPathwayComponent(rxn);
+    pathway.addDataSource(source);
+    return model;
+  }
+}
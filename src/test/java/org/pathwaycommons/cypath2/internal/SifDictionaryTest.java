@@ -0,0 +1,88 @@
+package org.pathwaycommons.cypath2.internal;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dictionary-encoded SIF edge lists: the same SIF rows parsed to plain vs. encoded lists
+ * and then decoded.
+ *
+ * @author rodche
+ */
+public class SifDictionaryTest {
+
+  private static final String SIF = "A\tcontrols-state-change-of\tB\tReactome;PID\t123;456\tP1;P2\n"
+    + "B\tin-complex-with\tC\tReactome\t123\tP1\n"
+    + "C\tin-complex-with\tD\tPID;Reactome\t\tP2\n"
+    + "A\tcontrols-expression-of\tD\tReactome;PID\t123;456\tP1;P2\n";
+
+  @Test
+  public void roundTrip() throws IOException {
+    final CyNetwork plain = network(false);
+    final CyNetwork encoded = network(true);
+    assertFalse(SifDictionary.isEncoded(plain));
+    assertTrue(SifDictionary.isEncoded(encoded));
+
+    // encoded: the codes only, until decoded
+    final List<CyEdge> edges = edges(encoded);
+    for (String column : CustomSifParser.LIST_COLUMNS) {
+      assertNull(column, encoded.getDefaultEdgeTable().getColumn(column));
+      for (CyEdge edge : edges)
+        assertNotNull(column, encoded.getRow(edge).getList(column + SifDictionary.CODES_SUFFIX, Integer.class));
+    }
+    // distinct values in the order they were first met
+    assertEquals(Arrays.asList("Reactome", "PID"), encoded.getRow(encoded, CyNetwork.HIDDEN_ATTRS)
+      .getList("datasource" + SifDictionary.DICTIONARY_SUFFIX, String.class));
+
+    // decode some, then all (the decoded ones are not decoded again)
+    assertEquals(1, SifDictionary.decode(encoded, edges.subList(0, 1)));
+    assertEquals(edges.size() - 1, SifDictionary.decode(encoded, edges));
+
+    final List<CyEdge> plainEdges = edges(plain);
+    assertEquals(plainEdges.size(), edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      final CyRow expected = plain.getRow(plainEdges.get(i));
+      final CyRow actual = encoded.getRow(edges.get(i));
+      assertEquals(expected.get(CyNetwork.NAME, String.class), actual.get(CyNetwork.NAME, String.class));
+      for (String column : CustomSifParser.LIST_COLUMNS)
+        assertEquals(actual.get(CyNetwork.NAME, String.class) + " " + column,
+          expected.getList(column, String.class), actual.getList(column, String.class));
+    }
+  }
+
+  @Test
+  public void sharedCodeLists() throws IOException {
+    final CyNetwork network = network(true);
+    final List<CyEdge> edges = edges(network);
+    // the first and last rows have the same values
+    for (String column : CustomSifParser.LIST_COLUMNS) {
+      final String codes = column + SifDictionary.CODES_SUFFIX;
+      assertEquals(column, network.getRow(edges.get(0)).getList(codes, Integer.class),
+        network.getRow(edges.get(3)).getList(codes, Integer.class));
+    }
+  }
+
+  private static CyNetwork network(boolean encode) throws IOException {
+    final CyNetwork network = new NetworkTestSupport().getNetworkFactory().createNetwork();
+    final CustomSifParser parser = new CustomSifParser(network, encode);
+    assertEquals(4, parser.parse(new StringReader(SIF)));
+    parser.finish();
+    return network;
+  }
+
+  // in the order they were added
+  private static List<CyEdge> edges(CyNetwork network) {
+    final List<CyEdge> edges = new ArrayList<CyEdge>(network.getEdgeList());
+    edges.sort((e1, e2) -> Long.compare(e1.getSUID(), e2.getSUID()));
+    return edges;
+  }
+}